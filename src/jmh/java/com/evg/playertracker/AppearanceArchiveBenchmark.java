@@ -0,0 +1,81 @@
+package com.evg.playertracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * AppearanceArchive: запросы "кто был рядом" по геоиндексу за последние сутки и за всё время.
+ * Появления раскладываются по синтетическому месяцу
+ */
+@State(Scope.Thread)
+public class AppearanceArchiveBenchmark {
+    private static final int PLAYERS = 1000;
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+    @Param({"100000", "1000000"})
+    public int rowCount;
+
+    private Path directory;
+    private AppearanceArchive archive;
+    private long end;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkSupport.loadDefaultConfig();
+        SyntheticWorld world = new SyntheticWorld(PLAYERS, 5000, 42);
+        directory = Files.createTempDirectory("playertracker-archive-bench");
+        archive = new AppearanceArchive(directory);
+        archive.open();
+
+        long start = System.currentTimeMillis() - 30 * DAY_MS;
+        long stepMs = 30 * DAY_MS / Math.max(1, rowCount / PLAYERS);
+        List<StatsJournal.Record> batch = new ArrayList<>(PLAYERS);
+        long sequence = 0;
+        for (int step = 0; step < rowCount / PLAYERS; step++) {
+            world.step();
+            long timestamp = start + step * stepMs;
+            for (int i = 0; i < PLAYERS; i++) {
+                PlayerStats.AppearanceData appearance = new PlayerStats.AppearanceData(world.blockPos(i).getX(),
+                    world.blockPos(i).getY(), world.blockPos(i).getZ(), world.biomeId(i), timestamp, 1000);
+                batch.add(new StatsJournal.Record(++sequence, world.uuid(i), world.name(i), appearance));
+            }
+            archive.append(batch);
+            batch.clear();
+        }
+        archive.flush();
+        end = start + 30 * DAY_MS;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkSupport.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public long nearLastDay() throws IOException {
+        return near(end - DAY_MS);
+    }
+
+    @Benchmark
+    public long nearAllTime() throws IOException {
+        return near(Long.MIN_VALUE);
+    }
+
+    private long near(long from) throws IOException {
+        long[] count = new long[1];
+        archive.query(new AppearanceArchive.Query().time(from, end).near(250, -400, 64),
+            (uuid, timestamp, x, y, z, biomeId) -> count[0]++);
+        return count[0];
+    }
+}
@@ -0,0 +1,50 @@
+package com.evg.playertracker;
+
+import com.electronwill.nightconfig.core.CommentedConfig;
+import net.neoforged.fml.config.IConfigSpec;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * BenchmarkSupport - окружение для бенчмарков без клиента Minecraft.
+ * Конфиг подключается в памяти со значениями по умолчанию
+ */
+final class BenchmarkSupport {
+    private static boolean configLoaded;
+
+    private BenchmarkSupport() {
+    }
+
+    static synchronized void loadDefaultConfig() {
+        if (configLoaded) {
+            return;
+        }
+        CommentedConfig config = CommentedConfig.inMemory();
+        Config.SPEC.acceptConfig(new IConfigSpec.ILoadedConfig() {
+            @Override
+            public CommentedConfig config() {
+                return config;
+            }
+
+            @Override
+            public void save() {
+            }
+        });
+        configLoaded = true;
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.evg.playertracker;
+
+import net.minecraft.world.phys.Vec3;
+import net.minecraft.core.BlockPos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Цикл обнаружения: отсечение по дистанции и FOV, фильтр ников, сравнение с прошлым циклом и сборка DetectionBatch.
+ * Обращения к миру (level.players(), биомы) заменены синтетической популяцией
+ */
+@State(Scope.Thread)
+public class DetectionBenchmark {
+    private static final Vec3 VIEWER = new Vec3(0, 70, 0);
+    private static final Vec3 LOOK = new Vec3(1, 0, 0);
+
+    @Param({"10", "100", "1000", "5000"})
+    public int playerCount;
+
+    private SyntheticWorld world;
+    private DeltaTracker tracker;
+    private final FovCuller culler = new FovCuller();
+    private final PlayerDetector.Candidates candidates = new PlayerDetector.Candidates() {
+        @Override
+        public UUID uuid(int index) {
+            return world.uuid(index);
+        }
+
+        @Override
+        public String username(int index) {
+            return world.name(index);
+        }
+
+        @Override
+        public String teamName(int index) {
+            return null;
+        }
+
+        @Override
+        public BlockPos blockPos(int index) {
+            return world.blockPos(index);
+        }
+
+        @Override
+        public Vec3 position(int index) {
+            return world.position(index);
+        }
+
+        @Override
+        public int biomeId(int index, BlockPos blockPos) {
+            return world.biomeId(index);
+        }
+    };
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkSupport.loadDefaultConfig();
+        world = new SyntheticWorld(playerCount, 192, 42);
+        tracker = new DeltaTracker();
+        detect();
+    }
+
+    // Толпа без движения: почти все игроки без изменений
+    @Benchmark
+    public DetectionBatch detectIdle() {
+        return detect();
+    }
+
+    // Каждый вызов - новый тик движения
+    @Benchmark
+    public DetectionBatch detectMoving() {
+        world.step();
+        return detect();
+    }
+
+    // Цикл PlayerDetector.performDetection: проход после отсечения - общий PlayerDetector.observeAccepted,
+    // кандидаты и биомы берутся из синтетического мира, команд у игроков нет
+    private DetectionBatch detect() {
+        long now = System.currentTimeMillis();
+        tracker.beginCycle();
+        culler.clear();
+        for (int i = 0; i < world.size(); i++) {
+            Vec3 position = world.position(i);
+            culler.add(position.x, position.y, position.z);
+        }
+        int acceptedCount = culler.cull(VIEWER.x, VIEWER.y, VIEWER.z, LOOK.x, LOOK.y, LOOK.z,
+            Config.MAX_DETECTION_DISTANCE.get(), Config.FOV_FILTER.get(), Config.FOV_ANGLE.get());
+        PlayerDetector.observeAccepted(tracker, culler, acceptedCount, candidates, now);
+        List<DetectionBatch.Entry> changes = tracker.endCycle();
+        sequence++;
+        return new DetectionBatch(sequence, sequence, VIEWER, changes,
+            tracker.getChangedCount(), tracker.getUnchangedCount());
+    }
+}
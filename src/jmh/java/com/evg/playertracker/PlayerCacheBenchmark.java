@@ -0,0 +1,74 @@
+package com.evg.playertracker;
+
+import net.minecraft.world.phys.Vec3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * PlayerCache: применение цикла обнаружения (вставка и очистка) и запросы видимых игроков
+ */
+@State(Scope.Thread)
+public class PlayerCacheBenchmark {
+    private static final Vec3 VIEWER = new Vec3(0, 70, 0);
+    private static final double MAX_DISTANCE = 128;
+    private static final long LIFETIME_SECONDS = 300;
+
+    @Param({"10", "100", "1000", "5000"})
+    public int playerCount;
+
+    private SyntheticWorld world;
+    private PlayerCache cache;
+    // Кэш вдвое меньше популяции - каждая вставка вытесняет запись
+    private PlayerCache boundedCache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkSupport.loadDefaultConfig();
+        world = new SyntheticWorld(playerCount, 192, 42);
+        cache = new PlayerCache(playerCount, Long.MAX_VALUE, LIFETIME_SECONDS);
+        boundedCache = new PlayerCache(Math.max(1, playerCount / 2), Long.MAX_VALUE, LIFETIME_SECONDS);
+        applyCycle(cache);
+        applyCycle(boundedCache);
+    }
+
+    @Benchmark
+    public PlayerCache update() {
+        world.step();
+        applyCycle(cache);
+        return cache;
+    }
+
+    @Benchmark
+    public PlayerCache updateOverCapacity() {
+        world.step();
+        applyCycle(boundedCache);
+        return boundedCache;
+    }
+
+    @Benchmark
+    public VisiblePlayers queryNearest() {
+        return cache.query(VIEWER, MAX_DISTANCE, Config.SortMode.DISTANCE, 10);
+    }
+
+    @Benchmark
+    public VisiblePlayers queryByName() {
+        return cache.query(VIEWER, MAX_DISTANCE, Config.SortMode.NAME, 10);
+    }
+
+    @Benchmark
+    public List<PlayerData> visiblePlayers() {
+        return cache.getVisiblePlayers(VIEWER, MAX_DISTANCE, Config.SortMode.DISTANCE);
+    }
+
+    private void applyCycle(PlayerCache target) {
+        for (int i = 0; i < world.size(); i++) {
+            target.addPlayer(world.uuid(i), world.name(i), world.position(i), world.biomeId(i));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.evg.playertracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * PlayerStats: дозапись в журнал, сжатие в снимок, загрузка снимка с журналом и экспорт.
+ * Файлы пишутся во временный каталог
+ */
+@State(Scope.Thread)
+public class PlayerStatsBenchmark {
+    private static final int HISTORY_PER_PLAYER = 64;
+
+    @Param({"10", "100", "1000", "5000"})
+    public int playerCount;
+
+    private SyntheticWorld world;
+    private Path directory;
+    private PlayerStats stats;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkSupport.loadDefaultConfig();
+        world = new SyntheticWorld(playerCount, 192, 42);
+        directory = Files.createTempDirectory("playertracker-bench");
+        stats = new PlayerStats("benchmark", directory);
+        for (int n = 0; n < HISTORY_PER_PLAYER; n++) {
+            world.step();
+            recordCycle();
+        }
+        stats.saveStats(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        stats.shutdown();
+        BenchmarkSupport.deleteRecursively(directory);
+    }
+
+    // Один цикл статистики: наблюдение каждого игрока (в журнал попадают только точки
+    // маршрута сессий) и сброс в журнал
+    // (каждое SAVES_PER_COMPACTION-е сохранение включает сжатие, как в моде)
+    @Benchmark
+    public PlayerStats recordAndFlush() throws IOException {
+        world.step();
+        recordCycle();
+        stats.saveStats(false);
+        return stats;
+    }
+
+    @Benchmark
+    public PlayerStats compact() throws IOException {
+        stats.saveStats(true);
+        return stats;
+    }
+
+    @Benchmark
+    public int load() {
+        PlayerStats loaded = new PlayerStats("benchmark", directory);
+        int players = loaded.getTotalUniquePlayers();
+        loaded.shutdown();
+        return players;
+    }
+
+    @Benchmark
+    public long exportCsv() throws IOException {
+        return export(StatsExporter.Format.CSV);
+    }
+
+    @Benchmark
+    public long exportCsvLong() throws IOException {
+        return export(StatsExporter.Format.CSV_LONG);
+    }
+
+    private long export(StatsExporter.Format format) throws IOException {
+        StatsExporter.Result result = new StatsExporter(stats).export(format, directory);
+        Files.delete(result.path);
+        return result.rows;
+    }
+
+    private void recordCycle() {
+        for (int i = 0; i < world.size(); i++) {
+            stats.recordPlayerAppearance(world.uuid(i), world.name(i), world.blockPos(i), world.biomeId(i));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.evg.playertracker;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * SyntheticWorld - синтетическая популяция игроков вокруг наблюдателя в начале координат.
+ * Часть игроков стоит, часть ходит, бегает или летит на элитрах; часть ников
+ * похожа на NPC или содержит недопустимые символы, чтобы нагружать фильтр
+ */
+final class SyntheticWorld {
+    private static final String[] BIOMES = {
+        "minecraft:plains", "minecraft:forest", "minecraft:desert", "minecraft:taiga",
+        "minecraft:savanna", "minecraft:jungle", "minecraft:swamp", "minecraft:river",
+        "minecraft:ocean", "minecraft:badlands", "minecraft:meadow", "minecraft:cherry_grove"
+    };
+    // Скорости в блоках за тик: стоит, идёт, бежит, летит
+    private static final double[] SPEEDS = { 0.0, 0.22, 0.28, 1.5 };
+    private static final double[] SPEED_WEIGHTS = { 0.40, 0.40, 0.15, 0.05 };
+
+    private final Random random;
+    private final double spread;
+    private final UUID[] uuids;
+    private final String[] names;
+    private final int[] biomeIds;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final double[] heading;
+    private final double[] speed;
+    private final Vec3[] positions;
+
+    SyntheticWorld(int playerCount, double spread, long seed) {
+        this.random = new Random(seed);
+        this.spread = spread;
+        this.uuids = new UUID[playerCount];
+        this.names = new String[playerCount];
+        this.biomeIds = new int[playerCount];
+        this.x = new double[playerCount];
+        this.y = new double[playerCount];
+        this.z = new double[playerCount];
+        this.heading = new double[playerCount];
+        this.speed = new double[playerCount];
+        this.positions = new Vec3[playerCount];
+
+        for (int i = 0; i < playerCount; i++) {
+            uuids[i] = new UUID(random.nextLong(), random.nextLong());
+            names[i] = randomName(i);
+            biomeIds[i] = BiomeDictionary.idOf(BIOMES[random.nextInt(BIOMES.length)]);
+            x[i] = (random.nextDouble() * 2 - 1) * spread;
+            y[i] = 60 + random.nextInt(40);
+            z[i] = (random.nextDouble() * 2 - 1) * spread;
+            heading[i] = random.nextDouble() * Math.PI * 2;
+            speed[i] = randomSpeed();
+            positions[i] = new Vec3(x[i], y[i], z[i]);
+        }
+    }
+
+    /**
+     * Один игровой тик: игроки смещаются по своему курсу с небольшим разбросом,
+     * у границы области разворачиваются
+     */
+    void step() {
+        for (int i = 0; i < uuids.length; i++) {
+            if (speed[i] == 0.0) {
+                continue;
+            }
+            heading[i] += (random.nextDouble() - 0.5) * 0.2;
+            x[i] += Math.cos(heading[i]) * speed[i];
+            z[i] += Math.sin(heading[i]) * speed[i];
+            if (Math.abs(x[i]) > spread || Math.abs(z[i]) > spread) {
+                heading[i] += Math.PI;
+            }
+            positions[i] = new Vec3(x[i], y[i], z[i]);
+        }
+    }
+
+    int size() { return uuids.length; }
+    UUID uuid(int i) { return uuids[i]; }
+    String name(int i) { return names[i]; }
+    int biomeId(int i) { return biomeIds[i]; }
+    Vec3 position(int i) { return positions[i]; }
+
+    BlockPos blockPos(int i) {
+        return BlockPos.containing(x[i], y[i], z[i]);
+    }
+
+    private String randomName(int index) {
+        double roll = random.nextDouble();
+        if (roll < 0.85) {
+            return "Player_" + index;
+        }
+        if (roll < 0.95) {
+            String[] npcNames = { "Bot_", "npc", "ShopHelper", "Admin" };
+            return npcNames[random.nextInt(npcNames.length)] + index;
+        }
+        return "§cGuard" + index;
+    }
+
+    private double randomSpeed() {
+        double roll = random.nextDouble();
+        for (int i = 0; i < SPEEDS.length; i++) {
+            roll -= SPEED_WEIGHTS[i];
+            if (roll <= 0) {
+                return SPEEDS[i];
+            }
+        }
+        return SPEEDS[0];
+    }
+}
@@ -0,0 +1,658 @@
+package com.evg.playertracker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntPredicate;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * AppearanceArchive - архив появлений в столбцовом формате для аналитических запросов.
+ * Появления копятся в памяти и сбрасываются сегментами; внутри сегмента строки
+ * отсортированы по времени, каждый столбец (время, x, y, z, биом, индекс UUID) лежит
+ * непрерывно. Заголовок сегмента хранит диапазоны времени и координат: запрос по
+ * интервалу времени или области пропускает сегменты по заголовку, а подходящие читает
+ * через MappedByteBuffer, не загружая данные в кучу. Геоиндекс сегмента - номера строк,
+ * упорядоченные по ключам Мортона чанков: запрос по окрестности точки читает только
+ * диапазоны ключей, покрывающие круг. Несброшенные строки дописываются в хвостовой файл
+ * и после сбоя читаются обратно; заголовок хвоста хранит номер сегмента, в который
+ * строки попадут, поэтому уже запечатанный хвост повторно не загружается
+ */
+public class AppearanceArchive {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".col";
+    private static final int MAGIC = 0x50544331; // "PTC1"
+    // Версия 2 добавила геоиндекс; сегменты версии 1 читаются без него
+    private static final int VERSION = 2;
+    // Фиксированная часть заголовка: magic, версия, 3 счётчика, 2 времени, 6 границ координат
+    private static final int FIXED_HEADER_SIZE = 4 * 5 + 8 * 2 + 4 * 6;
+    // Не больше 2^16 строк: номер строки геоиндекса упаковывается в младшие биты ключа при сортировке
+    public static final int SEGMENT_ROWS = 64 * 1024;
+    private static final int ROW_BYTES = 8 + 4 * 3 + 2 + 4;
+    private static final int GEO_ROW_BYTES = 8 + 4;
+    private static final String TAIL_FILE = "tail.bin";
+    private static final int TAIL_MAGIC = 0x50545431; // "PTT1"
+    private static final int TAIL_HEADER_SIZE = 4 + 8;
+
+    @FunctionalInterface
+    public interface RowVisitor {
+        void visit(UUID uuid, long timestamp, int x, int y, int z, int biomeId);
+    }
+
+    private final Path directory;
+    // Заголовки запечатанных сегментов; читаются запросами без блокировки
+    private final List<SegmentInfo> segments = new CopyOnWriteArrayList<>();
+    private long nextSegmentId = 1;
+
+    // Несброшенные строки
+    private int pendingRows;
+    private long[] times = new long[1024];
+    private int[] xs = new int[1024];
+    private int[] ys = new int[1024];
+    private int[] zs = new int[1024];
+    private int[] biomes = new int[1024];
+    private UUID[] uuids = new UUID[1024];
+    // Хвостовой файл несброшенных строк; открывается при первой записи
+    private FileChannel tailChannel;
+
+    public AppearanceArchive(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Читает заголовки существующих сегментов; данные сегментов остаются на диске
+     */
+    public synchronized void open() throws IOException {
+        segments.clear();
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list
+                .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                    && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                .sorted()
+                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        }
+        for (Path file : files) {
+            try {
+                segments.add(SegmentInfo.read(file));
+                String name = file.getFileName().toString();
+                long id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                nextSegmentId = Math.max(nextSegmentId, id + 1);
+            } catch (IOException | NumberFormatException e) {
+                PlayerTrackerMod.LOGGER.warn("Пропущен повреждённый сегмент архива появлений: {}", file);
+            }
+        }
+        loadTail();
+    }
+
+    /**
+     * Добавляет записи в несброшенные строки и дописывает их в хвостовой файл;
+     * заполненный сегмент запечатывается
+     */
+    public synchronized void append(List<StatsJournal.Record> records) throws IOException {
+        int offset = 0;
+        while (offset < records.size()) {
+            int count = Math.min(records.size() - offset, SEGMENT_ROWS - pendingRows);
+            List<StatsJournal.Record> chunk = records.subList(offset, offset + count);
+            writeTail(chunk);
+            for (StatsJournal.Record record : chunk) {
+                PlayerStats.AppearanceData appearance = record.appearance;
+                addRow(record.uuid, appearance.timestamp, appearance.x, appearance.y, appearance.z, appearance.biomeId);
+            }
+            offset += count;
+            if (pendingRows >= SEGMENT_ROWS) {
+                seal();
+            }
+        }
+    }
+
+    private void addRow(UUID uuid, long timestamp, int x, int y, int z, int biomeId) {
+        if (pendingRows == times.length) {
+            grow();
+        }
+        times[pendingRows] = timestamp;
+        xs[pendingRows] = x;
+        ys[pendingRows] = y;
+        zs[pendingRows] = z;
+        biomes[pendingRows] = biomeId;
+        uuids[pendingRows] = uuid;
+        pendingRows++;
+    }
+
+    /**
+     * Сбрасывает накопленные строки в сегмент, даже неполный
+     */
+    public synchronized void flush() throws IOException {
+        if (pendingRows > 0) {
+            seal();
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if (tailChannel != null) {
+            tailChannel.close();
+            tailChannel = null;
+        }
+    }
+
+    /**
+     * Удаляет сегменты, целиком лежащие раньше cutoff
+     */
+    public synchronized int dropOlderThan(long cutoff) throws IOException {
+        int dropped = 0;
+        for (SegmentInfo segment : segments) {
+            if (segment.maxTime < cutoff) {
+                segments.remove(segment);
+                delete(segment);
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    public synchronized void clear() throws IOException {
+        for (SegmentInfo segment : segments) {
+            delete(segment);
+        }
+        segments.clear();
+        pendingRows = 0;
+        Arrays.fill(uuids, null);
+        resetTail();
+    }
+
+    // Пока отображение сегмента не собрано GC, Windows не даёт удалить файл -
+    // тогда он остаётся на диске и удаляется при следующей очистке после перезапуска
+    private static void delete(SegmentInfo segment) {
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            PlayerTrackerMod.LOGGER.debug("Сегмент архива {} пока не удалён: {}", segment.path, e.getMessage());
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return segments.isEmpty() && pendingRows == 0;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Обходит появления, подходящие под запрос. Возвращает число просмотренных
+     * сегментов (остальные отброшены по заголовку)
+     */
+    public int query(Query query, RowVisitor visitor) throws IOException {
+        int scanned = 0;
+        for (SegmentInfo segment : segments) {
+            if (!segment.overlaps(query)) {
+                continue;
+            }
+            int localBiome = -1;
+            if (query.biomeId >= 0) {
+                localBiome = segment.localBiome(query.biomeId);
+                if (localBiome < 0) {
+                    continue;
+                }
+            }
+            scanned++;
+            scanSegment(segment, query, localBiome, visitor);
+        }
+
+        // Строки, ещё не сброшенные в сегмент
+        synchronized (this) {
+            for (int row = 0; row < pendingRows; row++) {
+                if (query.matches(times[row], xs[row], ys[row], zs[row])
+                    && (query.biomeId < 0 || biomes[row] == query.biomeId)) {
+                    visitor.visit(uuids[row], times[row], xs[row], ys[row], zs[row], biomes[row]);
+                }
+            }
+        }
+        return scanned;
+    }
+
+    private void scanSegment(SegmentInfo segment, Query query, int localBiome, RowVisitor visitor) {
+        MappedByteBuffer data = segment.data;
+        Columns columns = new Columns(segment);
+
+        // Запрос по окрестности идёт по геоиндексу, если сегмент его содержит
+        if (query.radius >= 0 && segment.version >= 2) {
+            long[] ranges = MortonKeys.ranges(query.minX, query.minZ, query.maxX, query.maxZ);
+            for (int i = 0; i < ranges.length; i += 2) {
+                long from = ranges[i];
+                long to = ranges[i + 1];
+                int position = lowerBound(segment.rows, row -> data.getLong(columns.geoKeys + row * 8) < from);
+                for (; position < segment.rows; position++) {
+                    if (data.getLong(columns.geoKeys + position * 8) > to) {
+                        break;
+                    }
+                    int row = data.getInt(columns.geoRows + position * 4);
+                    visitRow(data, segment, columns, row, query, localBiome, visitor);
+                }
+            }
+            return;
+        }
+
+        // Столбец времени отсортирован - начало диапазона находится двоичным поиском
+        int first = lowerBound(segment.rows, row -> data.getLong(columns.time + row * 8) < query.fromTime);
+        for (int row = first; row < segment.rows; row++) {
+            if (data.getLong(columns.time + row * 8) > query.toTime) {
+                break;
+            }
+            visitRow(data, segment, columns, row, query, localBiome, visitor);
+        }
+    }
+
+    private static void visitRow(MappedByteBuffer data, SegmentInfo segment, Columns columns, int row,
+                                 Query query, int localBiome, RowVisitor visitor) {
+        long timestamp = data.getLong(columns.time + row * 8);
+        int x = data.getInt(columns.x + row * 4);
+        int y = data.getInt(columns.y + row * 4);
+        int z = data.getInt(columns.z + row * 4);
+        if (!query.matches(timestamp, x, y, z)) {
+            return;
+        }
+        int biome = data.getShort(columns.biome + row * 2);
+        if (localBiome >= 0 && biome != localBiome) {
+            return;
+        }
+        int uuidIndex = data.getInt(columns.uuid + row * 4);
+        int uuidOffset = segment.uuidTableOffset + uuidIndex * 16;
+        UUID uuid = new UUID(data.getLong(uuidOffset), data.getLong(uuidOffset + 8));
+        visitor.visit(uuid, timestamp, x, y, z, segment.biomeIds[biome]);
+    }
+
+    // Первая позиция, для которой before ложно (before монотонно: сначала истинно, затем ложно)
+    private static int lowerBound(int size, IntPredicate before) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (before.test(mid)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Под блокировкой архива
+    private void seal() throws IOException {
+        int rows = pendingRows;
+        Integer[] order = new Integer[rows];
+        for (int i = 0; i < rows; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(times[a], times[b]));
+
+        // Словари сегмента: UUID и биомы по номеру первого появления
+        Map<UUID, Integer> uuidIndex = new HashMap<>();
+        List<UUID> uuidTable = new ArrayList<>();
+        Map<Integer, Integer> biomeIndex = new HashMap<>();
+        List<String> biomeNames = new ArrayList<>();
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for (int row = 0; row < rows; row++) {
+            if (uuidIndex.putIfAbsent(uuids[row], uuidTable.size()) == null) {
+                uuidTable.add(uuids[row]);
+            }
+            if (biomeIndex.putIfAbsent(biomes[row], biomeNames.size()) == null) {
+                biomeNames.add(BiomeDictionary.nameOf(biomes[row]));
+            }
+            minX = Math.min(minX, xs[row]);
+            maxX = Math.max(maxX, xs[row]);
+            minY = Math.min(minY, ys[row]);
+            maxY = Math.max(maxY, ys[row]);
+            minZ = Math.min(minZ, zs[row]);
+            maxZ = Math.max(maxZ, zs[row]);
+        }
+
+        byte[][] encodedNames = new byte[biomeNames.size()][];
+        int namesSize = 0;
+        for (int i = 0; i < encodedNames.length; i++) {
+            encodedNames[i] = biomeNames.get(i).getBytes(StandardCharsets.UTF_8);
+            namesSize += 2 + encodedNames[i].length;
+        }
+        // Геоиндекс: строки в порядке ключей Мортона, внутри чанка - по времени
+        long[] geo = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            int row = order[i];
+            geo[i] = (MortonKeys.ofBlock(xs[row], zs[row]) << 16) | i;
+        }
+        Arrays.sort(geo);
+
+        int size = FIXED_HEADER_SIZE + namesSize + uuidTable.size() * 16 + rows * (ROW_BYTES + GEO_ROW_BYTES);
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(VERSION);
+        buffer.putInt(rows).putInt(uuidTable.size()).putInt(biomeNames.size());
+        buffer.putLong(times[order[0]]).putLong(times[order[rows - 1]]);
+        buffer.putInt(minX).putInt(maxX).putInt(minY).putInt(maxY).putInt(minZ).putInt(maxZ);
+        for (byte[] name : encodedNames) {
+            buffer.putShort((short) name.length).put(name);
+        }
+        for (UUID uuid : uuidTable) {
+            buffer.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+        }
+        for (int i = 0; i < rows; i++) buffer.putLong(times[order[i]]);
+        for (int i = 0; i < rows; i++) buffer.putInt(xs[order[i]]);
+        for (int i = 0; i < rows; i++) buffer.putInt(ys[order[i]]);
+        for (int i = 0; i < rows; i++) buffer.putInt(zs[order[i]]);
+        for (int i = 0; i < rows; i++) buffer.putShort(biomeIndex.get(biomes[order[i]]).shortValue());
+        for (int i = 0; i < rows; i++) buffer.putInt(uuidIndex.get(uuids[order[i]]));
+        for (int i = 0; i < rows; i++) buffer.putLong(geo[i] >>> 16);
+        for (int i = 0; i < rows; i++) buffer.putInt((int) (geo[i] & 0xFFFF));
+        buffer.flip();
+
+        Files.createDirectories(directory);
+        Path path = directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, nextSegmentId++, SEGMENT_SUFFIX));
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+
+        segments.add(SegmentInfo.read(path));
+        pendingRows = 0;
+        Arrays.fill(uuids, null);
+        resetTail();
+    }
+
+    // Запись: [int длина][int CRC32][время, x, y, z, UUID, имя биома] - как в журнале статистики
+    private void writeTail(List<StatsJournal.Record> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        FileChannel channel = openTail();
+        ByteBuffer buffer = ByteBuffer.allocate(records.size() * 96);
+        CRC32 crc = new CRC32();
+        for (StatsJournal.Record record : records) {
+            PlayerStats.AppearanceData appearance = record.appearance;
+            byte[] biome = BiomeDictionary.nameOf(appearance.biomeId).getBytes(StandardCharsets.UTF_8);
+            ByteBuffer payload = ByteBuffer.allocate(8 + 4 * 3 + 16 + 2 + biome.length);
+            payload.putLong(appearance.timestamp).putInt(appearance.x).putInt(appearance.y).putInt(appearance.z);
+            payload.putLong(record.uuid.getMostSignificantBits()).putLong(record.uuid.getLeastSignificantBits());
+            payload.putShort((short) biome.length).put(biome);
+            crc.reset();
+            crc.update(payload.array());
+            if (buffer.remaining() < 8 + payload.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2 + payload.capacity());
+                buffer.flip();
+                buffer = larger.put(buffer);
+            }
+            buffer.putInt(payload.capacity()).putInt((int) crc.getValue()).put(payload.array());
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    private FileChannel openTail() throws IOException {
+        if (tailChannel == null || !tailChannel.isOpen()) {
+            Files.createDirectories(directory);
+            Path path = directory.resolve(TAIL_FILE);
+            boolean fresh = !Files.exists(path) || Files.size(path) < TAIL_HEADER_SIZE;
+            tailChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (fresh) {
+                writeTailHeader();
+            } else {
+                tailChannel.position(tailChannel.size());
+            }
+        }
+        return tailChannel;
+    }
+
+    // Хвост пуст: строки запечатаны или сброшены; следующие попадут в сегмент nextSegmentId
+    private void resetTail() throws IOException {
+        if (tailChannel != null && tailChannel.isOpen()) {
+            writeTailHeader();
+        } else {
+            Files.deleteIfExists(directory.resolve(TAIL_FILE));
+        }
+    }
+
+    private void writeTailHeader() throws IOException {
+        tailChannel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(TAIL_HEADER_SIZE);
+        header.putInt(TAIL_MAGIC).putLong(nextSegmentId).flip();
+        tailChannel.position(0);
+        while (header.hasRemaining()) {
+            tailChannel.write(header);
+        }
+        tailChannel.force(false);
+    }
+
+    // Строки, не успевшие попасть в сегмент до остановки или сбоя
+    private void loadTail() throws IOException {
+        Path path = directory.resolve(TAIL_FILE);
+        if (!Files.exists(path)) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() < TAIL_HEADER_SIZE || buffer.getInt() != TAIL_MAGIC
+            || buffer.getLong() < nextSegmentId) {
+            // Сегмент с этими строками уже записан - хвост не успели очистить
+            Files.delete(path);
+            return;
+        }
+        CRC32 crc = new CRC32();
+        int validEnd = buffer.position();
+        while (buffer.remaining() >= 8) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            ByteBuffer row = ByteBuffer.wrap(payload);
+            long timestamp = row.getLong();
+            int x = row.getInt();
+            int y = row.getInt();
+            int z = row.getInt();
+            UUID uuid = new UUID(row.getLong(), row.getLong());
+            byte[] biome = new byte[row.getShort() & 0xFFFF];
+            row.get(biome);
+            addRow(uuid, timestamp, x, y, z, BiomeDictionary.idOf(new String(biome, StandardCharsets.UTF_8)));
+            validEnd = buffer.position();
+        }
+        // Оборванная запись в конце отбрасывается, дозапись продолжится после целых
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(validEnd);
+        }
+        if (pendingRows >= SEGMENT_ROWS) {
+            seal();
+        }
+    }
+
+    private void grow() {
+        int length = times.length * 2;
+        times = Arrays.copyOf(times, length);
+        xs = Arrays.copyOf(xs, length);
+        ys = Arrays.copyOf(ys, length);
+        zs = Arrays.copyOf(zs, length);
+        biomes = Arrays.copyOf(biomes, length);
+        uuids = Arrays.copyOf(uuids, length);
+    }
+
+    /**
+     * Условия запроса; по умолчанию ничем не ограничен
+     */
+    public static class Query {
+        long fromTime = Long.MIN_VALUE;
+        long toTime = Long.MAX_VALUE;
+        int minX = Integer.MIN_VALUE, minY = Integer.MIN_VALUE, minZ = Integer.MIN_VALUE;
+        int maxX = Integer.MAX_VALUE, maxY = Integer.MAX_VALUE, maxZ = Integer.MAX_VALUE;
+        int biomeId = -1;
+        // Окрестность: центр и радиус по x/z, -1 - без ограничения
+        int centerX, centerZ;
+        long radius = -1;
+
+        public Query time(long fromMillis, long toMillis) {
+            this.fromTime = fromMillis;
+            this.toTime = toMillis;
+            return this;
+        }
+
+        public Query box(int x1, int y1, int z1, int x2, int y2, int z2) {
+            this.minX = Math.min(x1, x2);
+            this.minY = Math.min(y1, y2);
+            this.minZ = Math.min(z1, z2);
+            this.maxX = Math.max(x1, x2);
+            this.maxY = Math.max(y1, y2);
+            this.maxZ = Math.max(z1, z2);
+            return this;
+        }
+
+        // Круг радиуса radius вокруг (x, z) на карте, по всей высоте.
+        // Границы считаются в long и обрезаются до int - у края диапазона они не переполняются
+        public Query near(int x, int z, int radius) {
+            this.centerX = x;
+            this.centerZ = z;
+            this.radius = radius;
+            return box(clamp((long) x - radius), Integer.MIN_VALUE, clamp((long) z - radius),
+                clamp((long) x + radius), Integer.MAX_VALUE, clamp((long) z + radius));
+        }
+
+        private static int clamp(long value) {
+            return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+        }
+
+        public Query biome(int biomeId) {
+            this.biomeId = biomeId;
+            return this;
+        }
+
+        boolean matches(long timestamp, int x, int y, int z) {
+            return timestamp >= fromTime && timestamp <= toTime
+                && x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ
+                && (radius < 0 || withinRadius(x, z));
+        }
+
+        private boolean withinRadius(int x, int z) {
+            long dx = (long) x - centerX;
+            long dz = (long) z - centerZ;
+            return dx * dx + dz * dz <= radius * radius;
+        }
+    }
+
+    // Смещения столбцов сегмента
+    private static class Columns {
+        final int time, x, y, z, biome, uuid, geoKeys, geoRows;
+
+        Columns(SegmentInfo segment) {
+            int rows = segment.rows;
+            time = segment.columnsOffset;
+            x = time + rows * 8;
+            y = x + rows * 4;
+            z = y + rows * 4;
+            biome = z + rows * 4;
+            uuid = biome + rows * 2;
+            geoKeys = uuid + rows * 4;
+            geoRows = geoKeys + rows * 8;
+        }
+    }
+
+    /**
+     * Заголовок сегмента: границы для отбора и положение столбцов
+     */
+    private static class SegmentInfo {
+        Path path;
+        // Отображение файла создаётся один раз: сегмент после записи не меняется
+        MappedByteBuffer data;
+        int version;
+        int rows;
+        long minTime, maxTime;
+        int minX, maxX, minY, maxY, minZ, maxZ;
+        // Глобальные id биомов словаря сегмента: id в BiomeDictionary не меняются,
+        // поэтому таблица строится один раз при чтении заголовка
+        int[] biomeIds;
+        int uuidTableOffset;
+        int columnsOffset;
+
+        static SegmentInfo read(Path path) throws IOException {
+            MappedByteBuffer header;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                header = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            int magic = header.getInt();
+            int version = header.getInt();
+            if (magic != MAGIC || version < 1 || version > VERSION) {
+                throw new IOException("Неизвестный формат сегмента архива: " + path);
+            }
+            SegmentInfo info = new SegmentInfo();
+            info.path = path;
+            info.data = header;
+            info.version = version;
+            info.rows = header.getInt();
+            int uuidCount = header.getInt();
+            int biomeCount = header.getInt();
+            info.minTime = header.getLong();
+            info.maxTime = header.getLong();
+            info.minX = header.getInt();
+            info.maxX = header.getInt();
+            info.minY = header.getInt();
+            info.maxY = header.getInt();
+            info.minZ = header.getInt();
+            info.maxZ = header.getInt();
+            info.biomeIds = new int[biomeCount];
+            for (int i = 0; i < biomeCount; i++) {
+                byte[] name = new byte[header.getShort() & 0xFFFF];
+                header.get(name);
+                info.biomeIds[i] = BiomeDictionary.idOf(new String(name, StandardCharsets.UTF_8));
+            }
+            info.uuidTableOffset = header.position();
+            info.columnsOffset = info.uuidTableOffset + uuidCount * 16;
+            int rowBytes = version >= 2 ? ROW_BYTES + GEO_ROW_BYTES : ROW_BYTES;
+            if ((long) info.columnsOffset + (long) info.rows * rowBytes > header.capacity()) {
+                throw new IOException("Сегмент архива обрезан: " + path);
+            }
+            return info;
+        }
+
+        boolean overlaps(Query query) {
+            return maxTime >= query.fromTime && minTime <= query.toTime
+                && maxX >= query.minX && minX <= query.maxX
+                && maxY >= query.minY && minY <= query.maxY
+                && maxZ >= query.minZ && minZ <= query.maxZ;
+        }
+
+        // Номер биома в словаре сегмента или -1, если биом в сегменте не встречается
+        int localBiome(int biomeId) {
+            for (int i = 0; i < biomeIds.length; i++) {
+                if (biomeIds[i] == biomeId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.evg.playertracker;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * AppearanceHistory - история перемещений игрока ограниченного объёма.
+ * Последние выборки хранятся точно в кольцевом буфере; вытесняемые выборки
+ * сворачиваются в минутные, а затем в часовые корзины (средняя точка и число выборок).
+ * Ёмкость уровней фиксирована, поэтому память на игрока ограничена (не больше ~70 КБ
+ * даже у игрока, которого видят круглосуточно); срок удержания из конфига - наибольший
+ * возраст записей, по нему записи сворачиваются и удаляются в prune. Массивы растут по мере заполнения.
+ * Время хранится в секундах относительно baseTime, координаты - в int, биом - в short
+ */
+public class AppearanceHistory {
+    public static final int RAW_CAPACITY = 512;
+    public static final int MINUTE_CAPACITY = 24 * 60;   // сутки непрерывного присутствия
+    public static final int HOUR_CAPACITY = 8 * 7 * 24;  // 8 недель непрерывного присутствия
+    // Уровни хранения: есть точные или минутные записи / только часовые корзины / пусто
+    public static final int TIER_FULL = 0;
+    public static final int TIER_HOURLY = 1;
+    public static final int TIER_SUMMARY = 2;
+    private static final int MINUTE_SECONDS = 60;
+    private static final int HOUR_SECONDS = 3600;
+
+    @FunctionalInterface
+    public interface SampleVisitor {
+        void visit(int x, int y, int z, int biomeId, long timestampMillis, int count);
+    }
+
+    private long baseTime;
+    private long totalSamples;
+    private Ring raw;
+    private Ring minutes;
+    private Ring hours;
+
+    public AppearanceHistory() {
+        this.raw = new Ring(RAW_CAPACITY, false);
+        this.minutes = new Ring(MINUTE_CAPACITY, true);
+        this.hours = new Ring(HOUR_CAPACITY, true);
+    }
+
+    // Глубокая копия - для чтения вне блокировки сегмента статистики
+    public AppearanceHistory copy() {
+        AppearanceHistory copy = new AppearanceHistory();
+        copy.baseTime = baseTime;
+        copy.totalSamples = totalSamples;
+        copy.raw = raw.copy();
+        copy.minutes = minutes.copy();
+        copy.hours = hours.copy();
+        return copy;
+    }
+
+    public void record(int x, int y, int z, int biomeId, long timestampMillis) {
+        long seconds = timestampMillis / 1000;
+        if (totalSamples == 0) {
+            baseTime = seconds;
+        }
+        int time = (int) (seconds - baseTime);
+
+        if (raw.isFull()) {
+            foldOldest(raw, minutes, MINUTE_SECONDS);
+        }
+        raw.push(x, y, z, (short) biomeId, time, 1);
+        totalSamples++;
+    }
+
+    // Переносит самую старую запись уровня from в корзину уровня to
+    private void foldOldest(Ring from, Ring to, int bucketSeconds) {
+        int i = from.physical(0);
+        int bucketStart = Math.floorDiv(from.time[i], bucketSeconds) * bucketSeconds;
+        int weight = from.weight(i);
+
+        if (!to.isEmpty() && to.time[to.physical(to.size - 1)] == bucketStart) {
+            to.mergeNewest(from.x[i], from.y[i], from.z[i], from.biome[i], weight);
+        } else {
+            if (to.isFull()) {
+                if (to == minutes) {
+                    foldOldest(minutes, hours, HOUR_SECONDS);
+                } else {
+                    to.dropOldest();
+                }
+            }
+            to.push(from.x[i], from.y[i], from.z[i], from.biome[i], bucketStart, weight);
+        }
+        from.dropOldest();
+    }
+
+    /**
+     * Удержание по возрасту: точные и минутные записи старше fineCutoff сворачиваются
+     * в часовые корзины, часовые корзины старше hourlyCutoff удаляются.
+     * Если удалять нечего, проверяется только самая старая запись каждого уровня
+     */
+    public boolean prune(long fineCutoffMillis, long hourlyCutoffMillis) {
+        int fineCutoff = relativeSeconds(fineCutoffMillis);
+        int hourlyCutoff = relativeSeconds(hourlyCutoffMillis);
+        boolean changed = false;
+        while (!raw.isEmpty() && raw.time[raw.physical(0)] < fineCutoff) {
+            foldOldest(raw, minutes, MINUTE_SECONDS);
+            changed = true;
+        }
+        while (!minutes.isEmpty() && minutes.time[minutes.physical(0)] < fineCutoff) {
+            foldOldest(minutes, hours, HOUR_SECONDS);
+            changed = true;
+        }
+        while (!hours.isEmpty() && hours.time[hours.physical(0)] < hourlyCutoff) {
+            hours.dropOldest();
+            changed = true;
+        }
+        return changed;
+    }
+
+    public int getTier() {
+        if (!raw.isEmpty() || !minutes.isEmpty()) {
+            return TIER_FULL;
+        }
+        return hours.isEmpty() ? TIER_SUMMARY : TIER_HOURLY;
+    }
+
+    // Время относительно baseTime с насыщением, чтобы далёкие отметки не переполняли int
+    private int relativeSeconds(long timestampMillis) {
+        long seconds = timestampMillis / 1000 - baseTime;
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, seconds));
+    }
+
+    public long getTotalSamples() { return totalSamples; }
+    public int getRawSize() { return raw.size; }
+    public int getMinuteBucketCount() { return minutes.size; }
+    public int getHourBucketCount() { return hours.size; }
+
+    /**
+     * Обходит всю историю от старых записей к новым: часовые корзины, минутные, точные выборки
+     */
+    public void forEach(SampleVisitor visitor) {
+        hours.forEach(baseTime, visitor);
+        minutes.forEach(baseTime, visitor);
+        raw.forEach(baseTime, visitor);
+    }
+
+    public void forEachRecent(SampleVisitor visitor) {
+        raw.forEach(baseTime, visitor);
+    }
+
+    // Точные последние выборки в виде записей (для экспорта)
+    public List<PlayerStats.AppearanceData> getRecentSamples() {
+        List<PlayerStats.AppearanceData> result = new ArrayList<>(raw.size);
+        raw.forEach(baseTime, (x, y, z, biomeId, timestamp, count) ->
+            result.add(new PlayerStats.AppearanceData(x, y, z, biomeId, timestamp, 0)));
+        return result;
+    }
+
+    // Перевод id биомов после загрузки сохранённого словаря
+    public void remapBiomes(int[] table) {
+        raw.remapBiomes(table);
+        minutes.remapBiomes(table);
+        hours.remapBiomes(table);
+    }
+
+    public long estimateBytes() {
+        return 48 + raw.estimateBytes() + minutes.estimateBytes() + hours.estimateBytes();
+    }
+
+    /**
+     * Двоичная форма для снимка статистики: базовое время, число выборок и три кольца
+     * от старых записей к новым
+     */
+    public byte[] encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize());
+        buffer.putLong(baseTime);
+        buffer.putLong(totalSamples);
+        raw.encode(buffer);
+        minutes.encode(buffer);
+        hours.encode(buffer);
+        return buffer.array();
+    }
+
+    public int encodedSize() {
+        return 16 + raw.encodedSize() + minutes.encodedSize() + hours.encodedSize();
+    }
+
+    public static AppearanceHistory decode(ByteBuffer buffer) {
+        AppearanceHistory history = new AppearanceHistory();
+        history.baseTime = buffer.getLong();
+        history.totalSamples = buffer.getLong();
+        history.raw.decode(buffer);
+        history.minutes.decode(buffer);
+        history.hours.decode(buffer);
+        return history;
+    }
+
+    private static class Ring {
+        private static final int INITIAL_SIZE = 8;
+
+        private int capacity;
+        private int head;
+        private int size;
+        private int[] x;
+        private int[] y;
+        private int[] z;
+        private short[] biome;
+        private int[] time;
+        // Число свёрнутых выборок в корзине; для точных выборок не хранится
+        private int[] count;
+
+        private Ring() {
+        }
+
+        Ring(int capacity, boolean weighted) {
+            this.capacity = capacity;
+            int initial = Math.min(capacity, INITIAL_SIZE);
+            this.x = new int[initial];
+            this.y = new int[initial];
+            this.z = new int[initial];
+            this.biome = new short[initial];
+            this.time = new int[initial];
+            this.count = weighted ? new int[initial] : null;
+        }
+
+        boolean isEmpty() { return size == 0; }
+        boolean isFull() { return size >= capacity; }
+
+        int physical(int logical) {
+            return (head + logical) % x.length;
+        }
+
+        int weight(int index) {
+            return count == null ? 1 : count[index];
+        }
+
+        void push(int px, int py, int pz, short pbiome, int ptime, int weight) {
+            if (size == x.length) {
+                grow();
+            }
+            int i = physical(size);
+            x[i] = px;
+            y[i] = py;
+            z[i] = pz;
+            biome[i] = pbiome;
+            time[i] = ptime;
+            if (count != null) {
+                count[i] = weight;
+            }
+            size++;
+        }
+
+        // Взвешенное усреднение координат; биом берётся у последней выборки
+        void mergeNewest(int px, int py, int pz, short pbiome, int weight) {
+            int i = physical(size - 1);
+            int current = count[i];
+            int total = current + weight;
+            x[i] = (int) Math.round(((double) x[i] * current + (double) px * weight) / total);
+            y[i] = (int) Math.round(((double) y[i] * current + (double) py * weight) / total);
+            z[i] = (int) Math.round(((double) z[i] * current + (double) pz * weight) / total);
+            biome[i] = pbiome;
+            count[i] = total;
+        }
+
+        void dropOldest() {
+            head = (head + 1) % x.length;
+            size--;
+        }
+
+        void forEach(long baseTime, SampleVisitor visitor) {
+            for (int n = 0; n < size; n++) {
+                int i = physical(n);
+                visitor.visit(x[i], y[i], z[i], biome[i], (baseTime + time[i]) * 1000L, weight(i));
+            }
+        }
+
+        Ring copy() {
+            Ring copy = new Ring();
+            copy.capacity = capacity;
+            copy.head = head;
+            copy.size = size;
+            copy.x = x.clone();
+            copy.y = y.clone();
+            copy.z = z.clone();
+            copy.biome = biome.clone();
+            copy.time = time.clone();
+            copy.count = count != null ? count.clone() : null;
+            return copy;
+        }
+
+        int encodedSize() {
+            return 4 + size * (4 * 4 + 2 + (count != null ? 4 : 0));
+        }
+
+        void encode(ByteBuffer buffer) {
+            buffer.putInt(size);
+            for (int n = 0; n < size; n++) {
+                int i = physical(n);
+                buffer.putInt(x[i]);
+                buffer.putInt(y[i]);
+                buffer.putInt(z[i]);
+                buffer.putShort(biome[i]);
+                buffer.putInt(time[i]);
+                if (count != null) {
+                    buffer.putInt(count[i]);
+                }
+            }
+        }
+
+        // Читает записи в пустое кольцо; лишние (при уменьшенной ёмкости) отбрасываются с начала
+        void decode(ByteBuffer buffer) {
+            int stored = buffer.getInt();
+            for (int n = 0; n < stored; n++) {
+                int px = buffer.getInt();
+                int py = buffer.getInt();
+                int pz = buffer.getInt();
+                short pbiome = buffer.getShort();
+                int ptime = buffer.getInt();
+                int weight = count != null ? buffer.getInt() : 1;
+                while (isFull()) {
+                    dropOldest();
+                }
+                push(px, py, pz, pbiome, ptime, weight);
+            }
+        }
+
+        void remapBiomes(int[] table) {
+            for (int n = 0; n < size; n++) {
+                int i = physical(n);
+                int id = biome[i];
+                biome[i] = (short) (id >= 0 && id < table.length ? table[id] : BiomeDictionary.UNKNOWN);
+            }
+        }
+
+        long estimateBytes() {
+            return 32 + (long) x.length * (4 * 4 + 2) + (count != null ? count.length * 4L : 0);
+        }
+
+        // Увеличивает массивы вдвое (до capacity), раскладывая записи с нуля
+        private void grow() {
+            int newLength = Math.max(size + 1, Math.min(capacity, x.length * 2));
+            int[] newX = new int[newLength];
+            int[] newY = new int[newLength];
+            int[] newZ = new int[newLength];
+            short[] newBiome = new short[newLength];
+            int[] newTime = new int[newLength];
+            int[] newCount = count != null ? new int[newLength] : null;
+
+            for (int n = 0; n < size; n++) {
+                int i = physical(n);
+                newX[n] = x[i];
+                newY[n] = y[i];
+                newZ[n] = z[i];
+                newBiome[n] = biome[i];
+                newTime[n] = time[i];
+                if (newCount != null) {
+                    newCount[n] = count[i];
+                }
+            }
+
+            x = newX;
+            y = newY;
+            z = newZ;
+            biome = newBiome;
+            time = newTime;
+            count = newCount;
+            head = 0;
+        }
+    }
+}
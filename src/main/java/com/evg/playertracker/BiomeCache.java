@@ -0,0 +1,100 @@
+package com.evg.playertracker;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.QuartPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LevelAccessor;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * BiomeCache - кэш id биомов по секциям чанков (16x16x16) для детектора.
+ * Ключ - упакованные координаты секции; внутри секции хранятся 64 ячейки 4x4x4,
+ * с разрешением которых мир хранит биомы (noise-биомы, без сглаживания getBiome).
+ * Ограничен по числу секций (LRU) и сбрасывается при выгрузке чанка, выгрузке мира
+ * или смене мира. Мир держится через слабую ссылку, чтобы не удерживать его после выхода
+ */
+public class BiomeCache {
+    private static final int MAX_SECTIONS = 1024;
+    private static final short UNRESOLVED = -1;
+
+    private static final Map<Long, short[]> sections = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, short[]> eldest) {
+            return size() > MAX_SECTIONS;
+        }
+    };
+    private static WeakReference<Level> cachedLevel = new WeakReference<>(null);
+    private static long hits;
+    private static long misses;
+    private static long invalidations;
+
+    public static synchronized int biomeIdAt(Level level, BlockPos pos) {
+        if (level != cachedLevel.get()) {
+            sections.clear();
+            cachedLevel = new WeakReference<>(level);
+        }
+
+        long key = SectionPos.asLong(
+            SectionPos.blockToSectionCoord(pos.getX()),
+            SectionPos.blockToSectionCoord(pos.getY()),
+            SectionPos.blockToSectionCoord(pos.getZ()));
+        short[] ids = sections.get(key);
+        if (ids == null) {
+            ids = new short[64];
+            Arrays.fill(ids, UNRESOLVED);
+            sections.put(key, ids);
+        }
+
+        int index = (((pos.getY() >> 2) & 3) << 4) | (((pos.getZ() >> 2) & 3) << 2) | ((pos.getX() >> 2) & 3);
+        int id = ids[index];
+        if (id == UNRESOLVED) {
+            misses++;
+            id = BiomeDictionary.idOf(level.getNoiseBiome(
+                QuartPos.fromBlock(pos.getX()), QuartPos.fromBlock(pos.getY()), QuartPos.fromBlock(pos.getZ())));
+            ids[index] = (short) id;
+        } else {
+            hits++;
+        }
+        return id;
+    }
+
+    /**
+     * Сбрасывает все секции выгруженного чанка (по высоте мира)
+     */
+    public static synchronized void invalidateChunk(LevelAccessor level, int chunkX, int chunkZ, int minSectionY, int sectionCount) {
+        if (level != cachedLevel.get() || sections.isEmpty()) {
+            return;
+        }
+        for (int sectionY = minSectionY; sectionY < minSectionY + sectionCount; sectionY++) {
+            if (sections.remove(SectionPos.asLong(chunkX, sectionY, chunkZ)) != null) {
+                invalidations++;
+            }
+        }
+    }
+
+    /**
+     * Сбрасывает кэш, если выгружается закэшированный мир
+     */
+    public static synchronized void invalidateLevel(LevelAccessor level) {
+        if (level == cachedLevel.get()) {
+            clear();
+        }
+    }
+
+    public static synchronized void clear() {
+        sections.clear();
+        cachedLevel = new WeakReference<>(null);
+    }
+
+    public static synchronized String getStats() {
+        long lookups = hits + misses;
+        return String.format("Секций: %d/%d, попаданий: %d, промахов: %d (%.1f%%), сброшено: %d",
+            sections.size(), MAX_SECTIONS, hits, misses,
+            lookups == 0 ? 0.0 : hits * 100.0 / lookups, invalidations);
+    }
+}
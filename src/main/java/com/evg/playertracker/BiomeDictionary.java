@@ -0,0 +1,109 @@
+package com.evg.playertracker;
+
+import net.minecraft.core.Holder;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.biome.Biome;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * BiomeDictionary - компактные числовые идентификаторы биомов.
+ * Ключ реестра биома переводится в id один раз; хранение,
+ * фильтрация и экспорт работают с id, имя нужно для отображения и сортировки
+ */
+public class BiomeDictionary {
+    public static final int UNKNOWN = 0;
+    private static final String UNKNOWN_NAME = "unknown";
+    private static final String DEFAULT_NAMESPACE = "minecraft:";
+
+    private static final Map<ResourceKey<Biome>, Integer> idsByKey = new ConcurrentHashMap<>();
+    private static final Map<String, Integer> idsByName = new HashMap<>();
+    // Таблица только заменяется целиком - чтение без блокировок
+    private static volatile String[] names = { UNKNOWN_NAME };
+
+    static {
+        idsByName.put(UNKNOWN_NAME, UNKNOWN);
+    }
+
+    public static int idOf(Holder<Biome> biome) {
+        Optional<ResourceKey<Biome>> key = biome.unwrapKey();
+        if (key.isEmpty()) {
+            return UNKNOWN;
+        }
+        Integer id = idsByKey.get(key.get());
+        if (id == null) {
+            id = idOf(key.get().location().toString());
+            idsByKey.put(key.get(), id);
+        }
+        return id;
+    }
+
+    public static synchronized int idOf(String name) {
+        if (name == null) {
+            return UNKNOWN;
+        }
+        Integer id = idsByName.get(name);
+        if (id == null) {
+            String[] current = names;
+            id = current.length;
+            String[] updated = Arrays.copyOf(current, id + 1);
+            updated[id] = name;
+            idsByName.put(name, id);
+            names = updated;
+        }
+        return id;
+    }
+
+    public static String nameOf(int id) {
+        String[] current = names;
+        return id >= 0 && id < current.length ? current[id] : UNKNOWN_NAME;
+    }
+
+    // Имя для HUD и команд: без пространства имён minecraft
+    public static String displayName(int id) {
+        String name = nameOf(id);
+        return name.startsWith(DEFAULT_NAMESPACE) ? name.substring(DEFAULT_NAMESPACE.length()) : name;
+    }
+
+    /**
+     * Множество id, имя которых содержит fragment (без учёта регистра).
+     * Строки сравниваются один раз на биом, а не на каждого игрока
+     */
+    public static BitSet idsMatching(String fragment) {
+        String needle = fragment.toLowerCase(Locale.ROOT);
+        String[] current = names;
+        BitSet result = new BitSet(current.length);
+        for (int id = 0; id < current.length; id++) {
+            if (current[id].toLowerCase(Locale.ROOT).contains(needle)) {
+                result.set(id);
+            }
+        }
+        return result;
+    }
+
+    public static int size() {
+        return names.length;
+    }
+
+    public static List<String> getNames() {
+        return List.of(names);
+    }
+
+    /**
+     * Таблица перевода id из сохранённого словаря в текущие id
+     */
+    public static int[] remapTable(List<String> savedNames) {
+        int[] table = new int[savedNames.size()];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = idOf(savedNames.get(i));
+        }
+        return table;
+    }
+}
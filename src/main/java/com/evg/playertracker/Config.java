@@ -2,6 +2,8 @@ package com.evg.playertracker;
 
 import net.neoforged.neoforge.common.ModConfigSpec;
 
+import java.util.List;
+
 public class Config {
     private static final ModConfigSpec.Builder BUILDER = new ModConfigSpec.Builder();
 
@@ -26,10 +28,27 @@ public class Config {
             .comment("Интервал обновления данных (в тиках)")
             .defineInRange("updateInterval", 20, 5, 100);
 
+    public static final ModConfigSpec.IntValue CACHE_UPDATE_INTERVAL = BUILDER
+            .comment("Интервал применения результатов обнаружения к кэшу (в тиках)")
+            .defineInRange("cacheUpdateInterval", 20, 1, 100);
+
+    public static final ModConfigSpec.IntValue STATS_UPDATE_INTERVAL = BUILDER
+            .comment("Интервал записи появлений игроков в статистику (в тиках)")
+            .defineInRange("statsUpdateInterval", 20, 5, 1200);
+
+    public static final ModConfigSpec.IntValue HUD_UPDATE_INTERVAL = BUILDER
+            .comment("Интервал обновления раскладки HUD (в тиках)")
+            .defineInRange("hudUpdateInterval", 40, 1, 100);
+
     public static final ModConfigSpec.BooleanValue FILTER_NPCS = BUILDER
             .comment("Фильтровать NPC (ботов и невалидных никнеймов)")
             .define("filterNpcs", true);
 
+    public static final ModConfigSpec.ConfigValue<List<? extends String>> NPC_BLOCKLIST = BUILDER
+            .comment("Подстроки никнеймов, по которым игрок считается NPC (без учёта регистра)")
+            .defineListAllowEmpty("npcBlocklist", List.of("bot", "npc", "admin", "mod", "helper"),
+                    () -> "", value -> value instanceof String);
+
     public static final ModConfigSpec.BooleanValue FOV_FILTER = BUILDER
             .comment("Включить фильтр по полю зрения")
             .define("fovFilter", true);
@@ -43,6 +62,14 @@ public class Config {
             .comment("Время жизни кэшированных данных (в секундах)")
             .defineInRange("cacheLifetime", 300, 60, 3600);
 
+    public static final ModConfigSpec.IntValue CACHE_MAX_ENTRIES = BUILDER
+            .comment("Максимальное число игроков в кэше (не зависит от числа строк HUD)")
+            .defineInRange("cacheMaxEntries", 1000, 16, 100000);
+
+    public static final ModConfigSpec.IntValue CACHE_MEMORY_BUDGET = BUILDER
+            .comment("Бюджет памяти кэша игроков (в КБ)")
+            .defineInRange("cacheMemoryBudgetKb", 1024, 64, 65536);
+
     // Настройки статистики
     public static final ModConfigSpec.BooleanValue AUTO_SAVE_STATS = BUILDER
             .comment("Автоматическое сохранение статистики")
@@ -60,6 +87,22 @@ public class Config {
             .comment("Автоматическое создание резервных копий статистики")
             .define("autoBackupStats", true);
 
+    public static final ModConfigSpec.IntValue RETENTION_RAW_DAYS = BUILDER
+            .comment("Сколько дней хранить точные и поминутные появления; более старые сворачиваются в часовые. Память на игрока ограничена: 512 точных выборок и сутки поминутных корзин непрерывного присутствия")
+            .defineInRange("retentionRawDays", 7, 1, 365);
+
+    public static final ModConfigSpec.IntValue RETENTION_HOURLY_WEEKS = BUILDER
+            .comment("Сколько недель хранить часовые сводки появлений; сводка по игроку хранится всегда. Не больше 8 недель непрерывного присутствия на игрока")
+            .defineInRange("retentionHourlyWeeks", 8, 1, 520);
+
+    public static final ModConfigSpec.IntValue SESSION_GAP_SECONDS = BUILDER
+            .comment("Через сколько секунд без наблюдений сессия игрока считается закончившейся. Не меньше 30 секунд подтверждения неподвижного игрока плюс два интервала записи статистики - меньшее значение увеличивается")
+            .defineInRange("sessionGapSeconds", 300, 60, 86400);
+
+    public static final ModConfigSpec.BooleanValue ARCHIVE_APPEARANCES = BUILDER
+            .comment("Дополнительно писать появления в столбцовый архив для запросов по времени, области и биому")
+            .define("archiveAppearances", false);
+
 
 
     // Настройки HUD
@@ -0,0 +1,115 @@
+package com.evg.playertracker;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * DeltaTracker - сравнение цикла обнаружения с предыдущим.
+ * Игрок считается изменившимся, если сменил блок, ник или команду; только для таких
+ * игроков собирается новая запись (биом, Vec3, строки). Неизменившиеся игроки
+ * стоят один поиск в карте и сравнение полей. Используется только с игрового потока
+ */
+public class DeltaTracker {
+    // Неизменившийся игрок подтверждается кэшу не чаще этого периода (меньше минимального TTL кэша)
+    static final long REFRESH_INTERVAL_MS = 30_000;
+
+    private final Map<UUID, Tracked> tracked = new HashMap<>();
+    private long cycle;
+    private int observedCount;
+    private int changedCount;
+    private int unchangedCount;
+    // Список изменений переиспользуется между циклами; DetectionBatch копирует его
+    // (пустой - без выделения памяти)
+    private final List<DetectionBatch.Entry> changes = new ArrayList<>();
+
+    public void beginCycle() {
+        cycle++;
+        observedCount = 0;
+        changedCount = 0;
+        unchangedCount = 0;
+        changes.clear();
+    }
+
+    /**
+     * true - игрок новый или изменился, вызывающий должен передать его состояние в changed().
+     * false - изменений нет, запись не пересобирается
+     */
+    public boolean observe(UUID uuid, String username, String teamName, BlockPos blockPos, long now) {
+        observedCount++;
+        Tracked state = tracked.get(uuid);
+        if (state == null
+            || !state.entry.getBlockPos().equals(blockPos)
+            || !state.entry.getUsername().equals(username)
+            || !Objects.equals(state.entry.getTeamName(), teamName)) {
+            return true;
+        }
+
+        state.seenCycle = cycle;
+        unchangedCount++;
+        if (now - state.emittedAt >= REFRESH_INTERVAL_MS) {
+            state.emittedAt = now;
+            changes.add(state.entry.withChange(DetectionBatch.Change.SEEN));
+        }
+        return false;
+    }
+
+    public void changed(UUID uuid, String username, String teamName, Vec3 position, BlockPos blockPos, int biomeId, long now) {
+        Tracked state = tracked.get(uuid);
+        DetectionBatch.Change change = state == null ? DetectionBatch.Change.ADDED : DetectionBatch.Change.MOVED;
+        DetectionBatch.Entry entry = new DetectionBatch.Entry(change, uuid, username, teamName, position, blockPos, biomeId);
+        if (state == null) {
+            state = new Tracked();
+            tracked.put(uuid, state);
+        }
+        state.entry = entry;
+        state.seenCycle = cycle;
+        state.emittedAt = now;
+        changes.add(entry);
+        changedCount++;
+    }
+
+    /**
+     * Завершает цикл: игроки, не встреченные в нём, уходят событием REMOVED.
+     * Обход выполняется только если кто-то действительно пропал.
+     * Список действителен до следующего beginCycle
+     */
+    public List<DetectionBatch.Entry> endCycle() {
+        if (tracked.size() > observedCount) {
+            Iterator<Tracked> iterator = tracked.values().iterator();
+            while (iterator.hasNext()) {
+                Tracked state = iterator.next();
+                if (state.seenCycle != cycle) {
+                    iterator.remove();
+                    changes.add(state.entry.withChange(DetectionBatch.Change.REMOVED));
+                    changedCount++;
+                }
+            }
+        }
+        return changes;
+    }
+
+    public int getChangedCount() { return changedCount; }
+    public int getUnchangedCount() { return unchangedCount; }
+
+    public int getTrackedCount() {
+        return tracked.size();
+    }
+
+    public void clear() {
+        tracked.clear();
+    }
+
+    private static class Tracked {
+        DetectionBatch.Entry entry;
+        long seenCycle;
+        long emittedAt;
+    }
+}
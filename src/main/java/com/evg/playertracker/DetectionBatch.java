@@ -0,0 +1,82 @@
+package com.evg.playertracker;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DetectionBatch - неизменяемый результат цикла обнаружения, снятый на игровом потоке.
+ * Содержит только изменения относительно предыдущего цикла (см. DeltaTracker);
+ * последующие стадии (кэш, статистика) работают только с ним и не обращаются к миру
+ */
+public class DetectionBatch {
+    private final long sequence;
+    private final long tick;
+    private final long timestamp;
+    private final Vec3 viewerPos;
+    private final List<Entry> entries;
+    private final int changedCount;
+    private final int unchangedCount;
+
+    public DetectionBatch(long sequence, long tick, Vec3 viewerPos, List<Entry> entries, int changedCount, int unchangedCount) {
+        this.sequence = sequence;
+        this.tick = tick;
+        this.timestamp = System.currentTimeMillis();
+        this.viewerPos = viewerPos;
+        this.entries = List.copyOf(entries);
+        this.changedCount = changedCount;
+        this.unchangedCount = unchangedCount;
+    }
+
+    public long getSequence() { return sequence; }
+    public long getTick() { return tick; }
+    public long getTimestamp() { return timestamp; }
+    public Vec3 getViewerPos() { return viewerPos; }
+    public List<Entry> getEntries() { return entries; }
+    // Игроки, для которых запись пересобрана (новые, сменившие блок, ник или команду, ушедшие)
+    public int getChangedCount() { return changedCount; }
+    // Игроки без изменений - для них ничего не пересобиралось
+    public int getUnchangedCount() { return unchangedCount; }
+
+    public enum Change {
+        ADDED,
+        MOVED,
+        // Игрок не изменился, но давно не подтверждался - продлевает запись в кэше
+        SEEN,
+        REMOVED
+    }
+
+    public static class Entry {
+        private final Change change;
+        private final UUID uuid;
+        private final String username;
+        private final String teamName;
+        private final Vec3 position;
+        private final BlockPos blockPos;
+        private final int biomeId;
+
+        public Entry(Change change, UUID uuid, String username, String teamName, Vec3 position, BlockPos blockPos, int biomeId) {
+            this.change = change;
+            this.uuid = uuid;
+            this.username = username;
+            this.teamName = teamName;
+            this.position = position;
+            this.blockPos = blockPos;
+            this.biomeId = biomeId;
+        }
+
+        public Entry withChange(Change change) {
+            return new Entry(change, uuid, username, teamName, position, blockPos, biomeId);
+        }
+
+        public Change getChange() { return change; }
+        public UUID getUuid() { return uuid; }
+        public String getUsername() { return username; }
+        public String getTeamName() { return teamName; }
+        public Vec3 getPosition() { return position; }
+        public BlockPos getBlockPos() { return blockPos; }
+        public int getBiomeId() { return biomeId; }
+    }
+}
@@ -0,0 +1,100 @@
+package com.evg.playertracker;
+
+import java.util.Arrays;
+
+/**
+ * FovCuller - отсечение кандидатов по дистанции и полю зрения за один проход
+ * по упакованным массивам координат. Дистанция сравнивается в квадратах, угол -
+ * через скалярное произведение с заранее вычисленным cos(FOV/2): без sqrt, acos
+ * и временных Vec3 на каждого кандидата
+ */
+public class FovCuller {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private double[] xs = new double[INITIAL_CAPACITY];
+    private double[] ys = new double[INITIAL_CAPACITY];
+    private double[] zs = new double[INITIAL_CAPACITY];
+    private int[] accepted = new int[INITIAL_CAPACITY];
+    private int size;
+    private int acceptedCount;
+
+    public void clear() {
+        size = 0;
+        acceptedCount = 0;
+    }
+
+    // Добавляет кандидата, возвращает его индекс
+    public int add(double x, double y, double z) {
+        if (size == xs.length) {
+            int capacity = size * 2;
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            zs = Arrays.copyOf(zs, capacity);
+            accepted = Arrays.copyOf(accepted, capacity);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        zs[size] = z;
+        return size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Отбирает кандидатов в радиусе maxDistance и, если задан fovDegrees, в конусе обзора.
+     * Возвращает число принятых; их индексы - getAccepted(0..n-1) в порядке добавления
+     */
+    public int cull(double viewerX, double viewerY, double viewerZ,
+                    double lookX, double lookY, double lookZ,
+                    double maxDistance, boolean fovFilter, double fovDegrees) {
+        double maxDistanceSq = maxDistance * maxDistance;
+        double lookLength = Math.sqrt(lookX * lookX + lookY * lookY + lookZ * lookZ);
+        if (lookLength > 0) {
+            lookX /= lookLength;
+            lookY /= lookLength;
+            lookZ /= lookLength;
+        }
+        double cosHalf = Math.cos(Math.toRadians(fovDegrees) / 2.0);
+
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            double dx = xs[i] - viewerX;
+            double dy = ys[i] - viewerY;
+            double dz = zs[i] - viewerZ;
+            double distanceSq = dx * dx + dy * dy + dz * dz;
+            if (distanceSq > maxDistanceSq) {
+                continue;
+            }
+            if (fovFilter && !inCone(dx, dy, dz, distanceSq, lookX, lookY, lookZ, cosHalf)) {
+                continue;
+            }
+            accepted[count++] = i;
+        }
+        acceptedCount = count;
+        return count;
+    }
+
+    public int getAccepted(int n) {
+        return accepted[n];
+    }
+
+    public int getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    /**
+     * angle(look, d) <= FOV/2  <=>  dot(look, d) >= cos(FOV/2) * |d|.
+     * Обе части возводятся в квадрат с учётом знаков, поэтому корень не нужен
+     */
+    public static boolean inCone(double dx, double dy, double dz, double distanceSq,
+                                 double lookX, double lookY, double lookZ, double cosHalf) {
+        double dot = lookX * dx + lookY * dy + lookZ * dz;
+        double thresholdSq = cosHalf * cosHalf * distanceSq;
+        if (cosHalf >= 0) {
+            return dot >= 0 && dot * dot >= thresholdSq;
+        }
+        return dot >= 0 || dot * dot <= thresholdSq;
+    }
+}
@@ -0,0 +1,83 @@
+package com.evg.playertracker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * LastSeenIndex - игроки, упорядоченные по времени последнего появления.
+ * Очистка статистики берёт игроков с головы индекса, пока они старше порога,
+ * и не трогает остальных. Не потокобезопасен - доступ под блокировкой сегмента статистики
+ */
+public class LastSeenIndex {
+    private final TreeSet<Key> order = new TreeSet<>();
+    private final Map<UUID, Key> keys = new HashMap<>();
+
+    public void update(UUID uuid, long lastSeen) {
+        Key current = keys.get(uuid);
+        if (current != null) {
+            if (current.lastSeen == lastSeen) {
+                return;
+            }
+            order.remove(current);
+        }
+        Key key = new Key(lastSeen, uuid);
+        order.add(key);
+        keys.put(uuid, key);
+    }
+
+    public void remove(UUID uuid) {
+        Key key = keys.remove(uuid);
+        if (key != null) {
+            order.remove(key);
+        }
+    }
+
+    public void clear() {
+        order.clear();
+        keys.clear();
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    // Не больше limit игроков, не появлявшихся с момента cutoff, от самых старых
+    public List<UUID> olderThan(long cutoff, int limit) {
+        List<UUID> result = new ArrayList<>();
+        for (Key key : order) {
+            if (key.lastSeen >= cutoff || result.size() >= limit) {
+                break;
+            }
+            result.add(key.uuid);
+        }
+        return result;
+    }
+
+    // Копия индекса по порядку: времена и UUID параллельными массивами
+    public void copyTo(List<Long> times, List<UUID> uuids) {
+        for (Key key : order) {
+            times.add(key.lastSeen);
+            uuids.add(key.uuid);
+        }
+    }
+
+    private static class Key implements Comparable<Key> {
+        final long lastSeen;
+        final UUID uuid;
+
+        Key(long lastSeen, UUID uuid) {
+            this.lastSeen = lastSeen;
+            this.uuid = uuid;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int result = Long.compare(lastSeen, other.lastSeen);
+            return result != 0 ? result : uuid.compareTo(other.uuid);
+        }
+    }
+}
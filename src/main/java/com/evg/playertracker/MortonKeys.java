@@ -0,0 +1,98 @@
+package com.evg.playertracker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MortonKeys - ключи Z-порядка по координатам чанка (x, z).
+ * Биты координат чередуются, поэтому соседние чанки обычно получают близкие ключи,
+ * а прямоугольник на карте покрывается небольшим числом непрерывных диапазонов ключей
+ */
+public final class MortonKeys {
+    // Сдвиг делает координаты чанка неотрицательными; 22 бита покрывают границу мира (±30 млн блоков)
+    private static final int BITS = 22;
+    private static final int OFFSET = 1 << (BITS - 1);
+    private static final int MAX = (1 << BITS) - 1;
+    // Ячейки мельче span / 2^REFINE_LEVELS не дробятся - число диапазонов остаётся ограниченным
+    private static final int REFINE_LEVELS = 3;
+
+    private MortonKeys() {
+    }
+
+    public static long ofBlock(int blockX, int blockZ) {
+        return of(blockX >> 4, blockZ >> 4);
+    }
+
+    public static long of(int chunkX, int chunkZ) {
+        return spread(clamp(chunkX)) | (spread(clamp(chunkZ)) << 1);
+    }
+
+    /**
+     * Отсортированные непересекающиеся диапазоны ключей [from, to] парами в массиве,
+     * покрывающие прямоугольник блоков. Диапазоны могут захватывать лишние чанки
+     * по краям - точная проверка остаётся за вызывающим
+     */
+    public static long[] ranges(int minBlockX, int minBlockZ, int maxBlockX, int maxBlockZ) {
+        int minX = clamp(minBlockX >> 4);
+        int minZ = clamp(minBlockZ >> 4);
+        int maxX = clamp(maxBlockX >> 4);
+        int maxZ = clamp(maxBlockZ >> 4);
+        int span = Math.max(maxX - minX, maxZ - minZ) + 1;
+        int minLevel = Math.max(0, 32 - Integer.numberOfLeadingZeros(span - 1) - REFINE_LEVELS);
+
+        List<long[]> out = new ArrayList<>();
+        collect(0, 0, BITS, minX, minZ, maxX, maxZ, minLevel, out);
+
+        long[] result = new long[out.size() * 2];
+        int count = 0;
+        for (long[] range : out) {
+            // Соседние диапазоны склеиваются
+            if (count > 0 && result[count - 1] + 1 == range[0]) {
+                result[count - 1] = range[1];
+            } else {
+                result[count++] = range[0];
+                result[count++] = range[1];
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    // Обход квадродерева ячеек в порядке ключей: (x, z) - нижний угол ячейки со стороной 2^level
+    private static void collect(int cellX, int cellZ, int level, int minX, int minZ, int maxX, int maxZ,
+                                int minLevel, List<long[]> out) {
+        int size = 1 << level;
+        int cellMaxX = cellX + size - 1;
+        int cellMaxZ = cellZ + size - 1;
+        if (cellX > maxX || cellMaxX < minX || cellZ > maxZ || cellMaxZ < minZ) {
+            return;
+        }
+        boolean inside = cellX >= minX && cellMaxX <= maxX && cellZ >= minZ && cellMaxZ <= maxZ;
+        if (inside || level <= minLevel) {
+            long from = spread(cellX) | (spread(cellZ) << 1);
+            out.add(new long[]{from, from + (1L << (2 * level)) - 1});
+            return;
+        }
+        int half = size >> 1;
+        // Младший бит пары - x, поэтому по возрастанию ключа: (0,0), (1,0), (0,1), (1,1)
+        collect(cellX, cellZ, level - 1, minX, minZ, maxX, maxZ, minLevel, out);
+        collect(cellX + half, cellZ, level - 1, minX, minZ, maxX, maxZ, minLevel, out);
+        collect(cellX, cellZ + half, level - 1, minX, minZ, maxX, maxZ, minLevel, out);
+        collect(cellX + half, cellZ + half, level - 1, minX, minZ, maxX, maxZ, minLevel, out);
+    }
+
+    private static int clamp(int chunk) {
+        return Math.max(0, Math.min(MAX, chunk + OFFSET));
+    }
+
+    // Раздвигает биты: бит i переходит в позицию 2i
+    private static long spread(int value) {
+        long v = value & 0xFFFFFFFFL;
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+}
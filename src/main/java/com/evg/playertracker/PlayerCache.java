@@ -1,80 +1,182 @@
 package com.evg.playertracker;
 
-import net.minecraft.world.level.biome.Biome;
 import net.minecraft.world.phys.Vec3;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 public class PlayerCache {
     private final Map<UUID, PlayerData> players = new ConcurrentHashMap<>();
-    private final Map<UUID, Long> lastSeen = new ConcurrentHashMap<>();
-    private final int maxCacheSize;
-    private final long cacheLifetime;
+    // Время последнего обновления: примитивная карта без упаковки Long и узлов на запись.
+    // Истечение по TTL и вытеснение по размеру выполняются пакетами. Доступ только под монитором кэша
+    private final UuidLongMap lastSeen = new UuidLongMap();
+    private long nextSweepTime;
+    private final SpatialGrid grid = new SpatialGrid();
+    // Упорядоченные индексы для сортировок по ключу; DISTANCE обслуживается сеткой
+    private final Map<Config.SortMode, SortedIndex> sortedViews = new EnumMap<>(Config.SortMode.class);
+    // Границы меняются при перезагрузке конфига через resize()
+    private int maxCacheSize;
+    private long maxCacheBytes;
+    private volatile long cacheLifetime;
+    // Оценка занимаемой памяти: записи PlayerData и служебные узлы индексов
+    private long footprintBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
 
-    public PlayerCache(int maxCacheSize, long cacheLifetime) {
+    // Узел players, слот lastSeen, ячейка сетки с индексом и три упорядоченных индекса
+    private static final long ENTRY_OVERHEAD_BYTES = 136 + 3 * 96;
+    // Устаревшие записи снимаются одним проходом не чаще раза в секунду;
+    // между проходами читатели отбрасывают их сами (isAlive)
+    private static final long SWEEP_INTERVAL_MS = 1000;
+
+    public PlayerCache(int maxCacheSize, long maxCacheBytes, long cacheLifetime) {
+        this.maxCacheSize = maxCacheSize;
+        this.maxCacheBytes = maxCacheBytes;
+        this.cacheLifetime = cacheLifetime;
+        sortedViews.put(Config.SortMode.NAME, new SortedIndex(PlayerData::getUsername));
+        sortedViews.put(Config.SortMode.TEAM, new SortedIndex(PlayerData::getTeamColor));
+        // Сортировка по имени биома: порядок не сдвигается при появлении новых биомов
+        sortedViews.put(Config.SortMode.BIOME, new SortedIndex(p -> BiomeDictionary.nameOf(p.getBiomeId())));
+    }
+
+    /**
+     * Применяет новые границы без пересоздания кэша; лишние записи вытесняются сразу
+     */
+    public synchronized void resize(int maxCacheSize, long maxCacheBytes, long cacheLifetime) {
         this.maxCacheSize = maxCacheSize;
+        this.maxCacheBytes = maxCacheBytes;
         this.cacheLifetime = cacheLifetime;
+        evict(System.currentTimeMillis());
     }
 
-    public void addPlayer(UUID uuid, String username, Vec3 position, Biome biome, Vec3 playerPos) {
-        PlayerData playerData = new PlayerData(uuid, username, position, biome, playerPos);
-        players.put(uuid, playerData);
-        lastSeen.put(uuid, System.currentTimeMillis());
+    public synchronized void addPlayer(UUID uuid, String username, Vec3 position, int biomeId) {
+        PlayerData playerData = new PlayerData(uuid, username, position, biomeId);
+        PlayerData previous = players.put(uuid, playerData);
+        footprintBytes += playerData.estimateBytes()
+            - (previous != null ? previous.estimateBytes() : -ENTRY_OVERHEAD_BYTES);
+        lastSeen.put(uuid, playerData.getTimestamp());
+        grid.put(playerData);
+        for (SortedIndex view : sortedViews.values()) {
+            view.update(playerData);
+        }
         
         // Очистка старых записей
-        cleanup();
+        evict(playerData.getTimestamp());
+    }
+
+    /**
+     * Продлевает запись неизменившегося игрока без её пересоздания.
+     * false - записи нет (вытеснена), игрока нужно добавить заново
+     */
+    public synchronized boolean touch(UUID uuid, long time) {
+        PlayerData playerData = players.get(uuid);
+        if (playerData == null) {
+            return false;
+        }
+        playerData.markSeen(time);
+        lastSeen.put(uuid, time);
+        return true;
     }
 
-    public void removePlayer(UUID uuid) {
-        players.remove(uuid);
+    public synchronized void removePlayer(UUID uuid) {
         lastSeen.remove(uuid);
+        release(uuid);
     }
 
     public PlayerData getPlayer(UUID uuid) {
-        return players.get(uuid);
+        PlayerData playerData = players.get(uuid);
+        if (playerData == null) {
+            misses.increment();
+            return null;
+        }
+        if (!isAlive(playerData, System.currentTimeMillis())) {
+            // Ленивое истечение: устаревшая запись удаляется при первом чтении
+            expire(uuid, playerData);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return playerData;
     }
 
-    public List<PlayerData> getAllPlayers() {
+    public synchronized List<PlayerData> getAllPlayers() {
+        expireStale(System.currentTimeMillis());
         return new ArrayList<>(players.values());
     }
 
     public List<PlayerData> getVisiblePlayers(Vec3 playerPos, double maxDistance, Config.SortMode sortMode) {
+        return query(playerPos, maxDistance, sortMode, Integer.MAX_VALUE).asList();
+    }
+
+    public List<PlayerData> getNearestPlayers(Vec3 playerPos, double maxDistance, int limit) {
+        return query(playerPos, maxDistance, Config.SortMode.DISTANCE, limit).asList();
+    }
+
+    /**
+     * Запрос видимых игроков относительно текущей позиции наблюдателя.
+     * В кэше хранятся только сырые позиции, поэтому перемещение локального игрока
+     * не требует перестройки кэша - дистанции считаются здесь, в квадратах.
+     * Для DISTANCE используется ограниченная куча, для остальных режимов - обход
+     * упорядоченного индекса до заполнения страницы; полная сортировка не выполняется
+     */
+    public synchronized VisiblePlayers query(Vec3 viewerPos, double maxDistance, Config.SortMode sortMode, int limit) {
+        if (limit <= 0) {
+            return VisiblePlayers.EMPTY;
+        }
+
         long currentTime = System.currentTimeMillis();
-        
-        List<PlayerData> visiblePlayers = players.values().stream()
-            .filter(player -> {
-                // Проверка дистанции
-                if (player.getDistance() > maxDistance) return false;
-                
-                // Проверка времени жизни кэша
-                Long lastSeenTime = lastSeen.get(player.getUuid());
-                if (lastSeenTime == null || (currentTime - lastSeenTime) > cacheLifetime * 1000) {
-                    return false;
+        sweepIfDue(currentTime);
+
+        if (sortMode == Config.SortMode.DISTANCE) {
+            NearestCollector collector = new NearestCollector(limit);
+            grid.forEachInRange(viewerPos, maxDistance, (player, distanceSq) -> {
+                if (isAlive(player, currentTime)) {
+                    collector.offer(player, distanceSq);
+                }
+            });
+            return collector.toResult(viewerPos);
+        }
+
+        SortedIndex view = sortedViews.get(sortMode);
+        int capacity = Math.min(limit, players.size());
+        PlayerData[] page = new PlayerData[capacity];
+        double[] distancesSq = new double[capacity];
+        int size = 0;
+
+        if (view != null) {
+            double maxDistanceSq = maxDistance * maxDistance;
+            for (UUID uuid : view) {
+                PlayerData player = players.get(uuid);
+                double distanceSq = player.distanceSqTo(viewerPos);
+                if (distanceSq <= maxDistanceSq && isAlive(player, currentTime)) {
+                    page[size] = player;
+                    distancesSq[size] = distanceSq;
+                    if (++size == capacity) {
+                        break;
+                    }
                 }
-                
-                return true;
-            })
-            .collect(Collectors.toList());
-
-        // Сортировка
-        switch (sortMode) {
-            case DISTANCE:
-                visiblePlayers.sort(Comparator.comparingDouble(PlayerData::getDistance));
-                break;
-            case NAME:
-                visiblePlayers.sort(Comparator.comparing(PlayerData::getUsername));
-                break;
-            case TEAM:
-                visiblePlayers.sort(Comparator.comparing(PlayerData::getTeamColor));
-                break;
-            case BIOME:
-                visiblePlayers.sort(Comparator.comparing(p -> p.getBiome().toString()));
-                break;
-        }
-
-        return visiblePlayers;
+            }
+        } else {
+            // Режим без индекса - порядок сетки
+            List<PlayerData> visiblePlayers = new ArrayList<>();
+            grid.forEachInRange(viewerPos, maxDistance, (player, distanceSq) -> {
+                if (isAlive(player, currentTime)) {
+                    visiblePlayers.add(player);
+                }
+            });
+            for (PlayerData player : visiblePlayers) {
+                if (size == capacity) {
+                    break;
+                }
+                page[size] = player;
+                distancesSq[size++] = player.distanceSqTo(viewerPos);
+            }
+        }
+        return new VisiblePlayers(viewerPos, page, distancesSq, size);
     }
 
     public List<PlayerData> getFilteredPlayers(Vec3 playerPos, double maxDistance, String filterType, String filterValue) {
@@ -84,9 +186,7 @@ public class PlayerCache {
             case "distance":
                 try {
                     double distance = Double.parseDouble(filterValue);
-                    return allPlayers.stream()
-                        .filter(p -> p.getDistance() <= distance)
-                        .collect(Collectors.toList());
+                    return getVisiblePlayers(playerPos, Math.min(distance, maxDistance), Config.SortMode.DISTANCE);
                 } catch (NumberFormatException e) {
                     return allPlayers;
                 }
@@ -95,71 +195,203 @@ public class PlayerCache {
                     .filter(p -> p.getTeamColor().equals(filterValue))
                     .collect(Collectors.toList());
             case "biome":
+                // Имена биомов сравниваются один раз, игроки проверяются по id
+                BitSet matchingBiomes = BiomeDictionary.idsMatching(filterValue);
                 return allPlayers.stream()
-                    .filter(p -> p.getBiome().toString().toLowerCase().contains(filterValue.toLowerCase()))
+                    .filter(p -> matchingBiomes.get(p.getBiomeId()))
                     .collect(Collectors.toList());
             default:
                 return allPlayers;
         }
     }
 
-    public void clearCache() {
+    public synchronized void clearCache() {
         players.clear();
         lastSeen.clear();
+        grid.clear();
+        for (SortedIndex view : sortedViews.values()) {
+            view.clear();
+        }
+        footprintBytes = 0;
     }
 
     public int getCacheSize() {
         return players.size();
     }
 
-    public Map<String, Object> getCacheStats() {
+    public synchronized Map<String, Object> getCacheStats() {
         Map<String, Object> stats = new HashMap<>();
         stats.put("totalPlayers", players.size());
         stats.put("maxCacheSize", maxCacheSize);
+        stats.put("estimatedBytes", footprintBytes);
+        stats.put("maxCacheBytes", maxCacheBytes);
         stats.put("cacheLifetime", cacheLifetime);
+        stats.put("gridCells", grid.getCellCount());
+        
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long lookups = hitCount + missCount;
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", lookups == 0 ? "n/a" : String.format("%.1f%%", hitCount * 100.0 / lookups));
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
         
-        if (!players.isEmpty()) {
-            long oldestTimestamp = players.values().stream()
-                .mapToLong(PlayerData::getTimestamp)
-                .min()
-                .orElse(0);
-            stats.put("oldestEntry", new Date(oldestTimestamp));
+        stats.put("lastSeenBytes", lastSeen.estimateBytes());
+        long oldest = lastSeen.minValue();
+        if (oldest != UuidLongMap.NO_VALUE) {
+            stats.put("oldestEntry", new Date(oldest));
         }
         
         return stats;
     }
 
-    private void cleanup() {
-        long currentTime = System.currentTimeMillis();
-        
-        // Удаление старых записей
-        Iterator<Map.Entry<UUID, Long>> iterator = lastSeen.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<UUID, Long> entry = iterator.next();
-            if ((currentTime - entry.getValue()) > cacheLifetime * 1000) {
-                players.remove(entry.getKey());
-                iterator.remove();
-            }
+    /**
+     * Вытеснение после вставки: истёкшие по TTL (пакетный проход раз в секунду),
+     * затем самые давно обновлённые сверх maxCacheSize или бюджета памяти.
+     * Сверх границы снимается запас в 10%, поэтому линейный выбор порога
+     * выполняется раз на много вставок - амортизированно O(1) на вставку
+     */
+    private void evict(long currentTime) {
+        sweepIfDue(currentTime);
+        if (lastSeen.size() <= maxCacheSize && footprintBytes <= maxCacheBytes) {
+            return;
         }
         
-        // Ограничение размера кэша
-        if (players.size() > maxCacheSize) {
-            List<Map.Entry<UUID, Long>> sortedEntries = lastSeen.entrySet().stream()
-                .sorted(Map.Entry.comparingByValue())
-                .collect(Collectors.toList());
-            
-            int toRemove = players.size() - maxCacheSize;
-            for (int i = 0; i < toRemove && i < sortedEntries.size(); i++) {
-                UUID uuid = sortedEntries.get(i).getKey();
-                players.remove(uuid);
-                lastSeen.remove(uuid);
-            }
+        long target = maxCacheSize - Math.max(1, maxCacheSize / 10);
+        if (footprintBytes > maxCacheBytes) {
+            long averageBytes = Math.max(1, footprintBytes / Math.max(1, lastSeen.size()));
+            target = Math.min(target, (maxCacheBytes - maxCacheBytes / 10) / averageBytes);
         }
+        int toRemove = lastSeen.size() - (int) Math.max(0, target);
+        lastSeen.removeSmallest(toRemove, (msb, lsb, time) -> {
+            release(new UUID(msb, lsb));
+            evictions.increment();
+        });
+    }
+
+    private void sweepIfDue(long currentTime) {
+        if (currentTime >= nextSweepTime) {
+            expireStale(currentTime);
+        }
+    }
+
+    // Один проход по lastSeen: удаляются записи старше cacheLifetime; под монитором кэша
+    private void expireStale(long currentTime) {
+        nextSweepTime = currentTime + SWEEP_INTERVAL_MS;
+        long cutoff = currentTime - cacheLifetime * 1000 - 1;
+        lastSeen.removeAtMost(cutoff, (msb, lsb, time) -> {
+            release(new UUID(msb, lsb));
+            expirations.increment();
+        });
+    }
+
+    private synchronized void expire(UUID uuid, PlayerData stale) {
+        // Запись могла быть обновлена между чтением и захватом монитора
+        if (players.get(uuid) == stale) {
+            lastSeen.remove(uuid);
+            release(uuid);
+            expirations.increment();
+        }
+    }
+
+    // Удаляет запись из players и сетки (lastSeen - на стороне вызывающего)
+    private void release(UUID uuid) {
+        PlayerData removed = players.remove(uuid);
+        grid.remove(uuid);
+        for (SortedIndex view : sortedViews.values()) {
+            view.remove(uuid);
+        }
+        if (removed != null) {
+            footprintBytes -= removed.estimateBytes() + ENTRY_OVERHEAD_BYTES;
+        }
+    }
+
+    private boolean isAlive(PlayerData playerData, long currentTime) {
+        return (currentTime - playerData.getLastSeen()) <= cacheLifetime * 1000;
     }
 
     public boolean isPlayerCached(UUID uuid) {
-        Long lastSeenTime = lastSeen.get(uuid);
-        if (lastSeenTime == null) return false;
-        return (System.currentTimeMillis() - lastSeenTime) <= cacheLifetime * 1000;
+        return getPlayer(uuid) != null;
+    }
+
+    // Ограниченная max-куча для выборки K ближайших игроков
+    private static class NearestCollector {
+        private final int limit;
+        private PlayerData[] heap;
+        private double[] distances;
+        private int size;
+
+        NearestCollector(int limit) {
+            this.limit = limit;
+            int capacity = Math.min(limit, 16);
+            this.heap = new PlayerData[capacity];
+            this.distances = new double[capacity];
+        }
+
+        void offer(PlayerData player, double distanceSq) {
+            if (size < limit) {
+                if (size == heap.length) {
+                    int capacity = (int) Math.min((long) limit, heap.length * 2L);
+                    heap = Arrays.copyOf(heap, capacity);
+                    distances = Arrays.copyOf(distances, capacity);
+                }
+                heap[size] = player;
+                distances[size] = distanceSq;
+                siftUp(size++);
+            } else if (distanceSq < distances[0]) {
+                heap[0] = player;
+                distances[0] = distanceSq;
+                siftDown(0, size);
+            }
+        }
+
+        VisiblePlayers toResult(Vec3 viewerPos) {
+            // Пирамидальная сортировка на месте: максимум уходит в конец массива
+            for (int end = size - 1; end > 0; end--) {
+                swap(0, end);
+                siftDown(0, end);
+            }
+            return new VisiblePlayers(viewerPos, heap, distances, size);
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (distances[parent] >= distances[index]) {
+                    break;
+                }
+                swap(parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index, int bound) {
+            while (true) {
+                int left = index * 2 + 1;
+                if (left >= bound) {
+                    break;
+                }
+                int largest = left;
+                int right = left + 1;
+                if (right < bound && distances[right] > distances[left]) {
+                    largest = right;
+                }
+                if (distances[index] >= distances[largest]) {
+                    break;
+                }
+                swap(index, largest);
+                index = largest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            PlayerData player = heap[a];
+            heap[a] = heap[b];
+            heap[b] = player;
+            double distance = distances[a];
+            distances[a] = distances[b];
+            distances[b] = distance;
+        }
     }
 }
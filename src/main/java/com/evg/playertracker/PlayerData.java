@@ -1,7 +1,6 @@
 package com.evg.playertracker;
 
 import net.minecraft.core.BlockPos;
-import net.minecraft.world.level.biome.Biome;
 import net.minecraft.world.phys.Vec3;
 
 import java.util.UUID;
@@ -10,35 +9,64 @@ public class PlayerData {
     private final UUID uuid;
     private final String username;
     private final Vec3 position;
-    private final Biome biome;
+    private final int biomeId;
     private final long timestamp;
-    private final double distance;
-    private final String direction;
+    // Последнее подтверждение присутствия: продлевается кэшем без пересоздания записи
+    private volatile long lastSeen;
     private final String teamColor;
 
-    public PlayerData(UUID uuid, String username, Vec3 position, Biome biome, Vec3 playerPos) {
+    // tan(22.5°) - граница между прямым и диагональным октантом
+    private static final double OCTANT_SLOPE = 0.41421356237309503;
+
+    public PlayerData(UUID uuid, String username, Vec3 position, int biomeId) {
         this.uuid = uuid;
         this.username = username;
         this.position = position;
-        this.biome = biome;
+        this.biomeId = biomeId;
         this.timestamp = System.currentTimeMillis();
-        this.distance = position.distanceTo(playerPos);
-        this.direction = calculateDirection(playerPos, position);
+        this.lastSeen = timestamp;
         this.teamColor = extractTeamColor(username);
     }
 
-    private String calculateDirection(Vec3 from, Vec3 to) {
-        Vec3 diff = to.subtract(from);
-        double angle = Math.atan2(diff.z, diff.x) * 180 / Math.PI;
-        
-        if (angle < 0) angle += 360;
-        
-        if (angle >= 315 || angle < 45) return "→"; // East
-        if (angle >= 45 && angle < 135) return "↓"; // South
-        if (angle >= 135 && angle < 225) return "←"; // West
-        if (angle >= 225 && angle < 315) return "↑"; // North
-        
-        return "?";
+    // Дистанция и направление считаются относительно текущей позиции наблюдателя
+    public double distanceSqTo(Vec3 viewerPos) {
+        double dx = position.x - viewerPos.x;
+        double dy = position.y - viewerPos.y;
+        double dz = position.z - viewerPos.z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    public double distanceTo(Vec3 viewerPos) {
+        return Math.sqrt(distanceSqTo(viewerPos));
+    }
+
+    public String directionFrom(Vec3 viewerPos) {
+        return octantArrow(position.x - viewerPos.x, position.z - viewerPos.z);
+    }
+
+    /**
+     * Направление по октантам без тригонометрии: сравниваем |dx| и |dz| с tan(22.5°)
+     */
+    public static String octantArrow(double dx, double dz) {
+        double ax = Math.abs(dx);
+        double az = Math.abs(dz);
+
+        if (az <= ax * OCTANT_SLOPE) return dx >= 0 ? "→" : "←"; // East / West
+        if (ax <= az * OCTANT_SLOPE) return dz >= 0 ? "↓" : "↑"; // South / North
+        if (dx >= 0) return dz >= 0 ? "↘" : "↗";
+        return dz >= 0 ? "↙" : "↖";
+    }
+
+    /**
+     * Приблизительный размер записи в куче: сама запись, UUID, Vec3 и строки
+     * ника и цвета команды (компактные строки Latin-1, сжатые ссылки)
+     */
+    public long estimateBytes() {
+        return 48 + 32 + 40 + estimateStringBytes(username) + estimateStringBytes(teamColor);
+    }
+
+    private static long estimateStringBytes(String value) {
+        return 24 + ((16 + value.length() + 7) & ~7L);
     }
 
     private String extractTeamColor(String username) {
@@ -54,10 +82,14 @@ public class PlayerData {
     public UUID getUuid() { return uuid; }
     public String getUsername() { return username; }
     public Vec3 getPosition() { return position; }
-    public Biome getBiome() { return biome; }
+    public int getBiomeId() { return biomeId; }
+    public String getBiomeName() { return BiomeDictionary.displayName(biomeId); }
     public long getTimestamp() { return timestamp; }
-    public double getDistance() { return distance; }
-    public String getDirection() { return direction; }
+    public long getLastSeen() { return lastSeen; }
+
+    void markSeen(long time) {
+        this.lastSeen = time;
+    }
     public String getTeamColor() { return teamColor; }
     public BlockPos getBlockPos() { return new BlockPos((int) position.x, (int) position.y, (int) position.z); }
 
@@ -76,7 +108,7 @@ public class PlayerData {
 
     @Override
     public String toString() {
-        return String.format("PlayerData{username='%s', distance=%.1f, direction='%s', biome='%s'}", 
-            username, distance, direction, biome.toString());
+        return String.format("PlayerData{username='%s', position=%s, biome='%s'}",
+            username, position, BiomeDictionary.nameOf(biomeId));
     }
 }
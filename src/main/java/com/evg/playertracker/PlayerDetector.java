@@ -5,32 +5,38 @@ import net.minecraft.client.player.LocalPlayer;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.Level;
-import net.minecraft.world.level.biome.Biome;
 import net.minecraft.world.phys.Vec3;
+import net.minecraft.world.scores.PlayerTeam;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * PlayerDetector - работает на клиенте через зону рендера
- * Обнаружение происходит по запросу через команды
+ * Обнаружение вызывается планировщиком TrackerScheduler на игровом потоке
  */
 public class PlayerDetector {
-    private static final ConcurrentHashMap<UUID, Long> lastDetectionTime = new ConcurrentHashMap<>();
-    private static int tickCounter = 0;
+    // Состояние игроков с прошлого цикла - в батч попадают только изменения
+    private static final DeltaTracker deltaTracker = new DeltaTracker();
+    // Координаты кандидатов цикла в плоских массивах; буферы переиспользуются
+    private static final FovCuller culler = new FovCuller();
+    private static Player[] candidates = new Player[64];
+    private static final WorldCandidates worldCandidates = new WorldCandidates();
+    private static long detectionCycles = 0;
+    private static long totalChanged = 0;
+    private static long totalUnchanged = 0;
+    
+    // Последний опубликованный снимок - единственная точка обмена между детектором и HUD
+    private static volatile TrackerSnapshot snapshot = TrackerSnapshot.EMPTY;
 
     /**
-     * Основной метод обнаружения игроков - вызывается по команде
+     * Основной метод обнаружения игроков - снимает состояние мира в неизменяемый снимок.
+     * Интервал (UPDATE_INTERVAL) обеспечивает планировщик, здесь он не проверяется
      */
-    public static void detectPlayers() {
+    public static DetectionBatch detectPlayers(long tick) {
         if (!Config.MOD_ENABLED.get()) {
-            return;
-        }
-        
-        tickCounter++;
-        if (tickCounter % Config.UPDATE_INTERVAL.get() != 0) {
-            return;
+            return null;
         }
         
         Minecraft minecraft = Minecraft.getInstance();
@@ -38,153 +44,162 @@ public class PlayerDetector {
         Level level = minecraft.level;
         
         if (localPlayer == null || level == null) {
-            return;
+            return null;
         }
         
-        performDetection(localPlayer, level);
+        return performDetection(localPlayer, level, tick);
     }
 
-    private static void performDetection(LocalPlayer localPlayer, Level level) {
+    private static DetectionBatch performDetection(LocalPlayer localPlayer, Level level, long tick) {
         Vec3 playerPos = localPlayer.position();
         Vec3 playerLookDir = localPlayer.getLookAngle();
+        long currentTime = System.currentTimeMillis();
+        deltaTracker.beginCycle();
         
-        // Получаем всех игроков в мире
+        // Получаем всех игроков в мире и упаковываем их координаты
         List<? extends Player> worldPlayers = level.players();
-        
+        culler.clear();
+        if (candidates.length < worldPlayers.size()) {
+            candidates = new Player[Math.max(worldPlayers.size(), candidates.length * 2)];
+        }
         for (Player player : worldPlayers) {
             // Пропускаем самого игрока
             if (player.equals(localPlayer)) {
                 continue;
             }
+            candidates[culler.add(player.getX(), player.getY(), player.getZ())] = player;
+        }
+        
+        // Дистанция и FOV проверяются одним проходом по массивам
+        int acceptedCount = culler.cull(playerPos.x, playerPos.y, playerPos.z,
+            playerLookDir.x, playerLookDir.y, playerLookDir.z,
+            Config.MAX_DETECTION_DISTANCE.get(), Config.FOV_FILTER.get(), Config.FOV_ANGLE.get());
+        
+        worldCandidates.level = level;
+        observeAccepted(deltaTracker, culler, acceptedCount, worldCandidates, currentTime);
+        // Не удерживаем ссылки на сущности и мир между циклами
+        worldCandidates.level = null;
+        Arrays.fill(candidates, 0, culler.size(), null);
+        
+        List<DetectionBatch.Entry> changes = deltaTracker.endCycle();
+        totalChanged += deltaTracker.getChangedCount();
+        totalUnchanged += deltaTracker.getUnchangedCount();
+        
+        detectionCycles++;
+        return new DetectionBatch(detectionCycles, tick, playerPos, changes,
+            deltaTracker.getChangedCount(), deltaTracker.getUnchangedCount());
+    }
+
+    /**
+     * Проход по принятым FovCuller кандидатам: фильтр ников, сравнение с прошлым циклом,
+     * для изменившихся - биом и запись в tracker. Общий для клиента и бенчмарка обнаружения
+     */
+    static void observeAccepted(DeltaTracker tracker, FovCuller culler, int acceptedCount,
+                                Candidates source, long currentTime) {
+        for (int n = 0; n < acceptedCount; n++) {
+            int index = culler.getAccepted(n);
             
-            // Проверяем валидность игрока
-            if (!isValidPlayer(player.getName().getString())) {
-                continue;
-            }
-            
-            Vec3 targetPos = player.position();
-            double distance = playerPos.distanceTo(targetPos);
-            
-            // Проверяем дистанцию
-            if (distance > Config.MAX_DETECTION_DISTANCE.get()) {
-                continue;
-            }
-            
-            // Проверяем FOV фильтр
-            if (!isPlayerInFOV(playerPos, targetPos, playerLookDir)) {
+            // Проверяем валидность игрока (результат кэшируется по UUID)
+            UUID playerUUID = source.uuid(index);
+            String username = source.username(index);
+            if (!PlayerFilter.isValid(playerUUID, username)) {
                 continue;
             }
             
-            // Проверяем, не слишком ли часто мы обновляем этого игрока
-            UUID playerUUID = player.getUUID();
-            long currentTime = System.currentTimeMillis();
-            Long lastTime = lastDetectionTime.get(playerUUID);
-            
-            if (lastTime != null && (currentTime - lastTime) < 1000) {
+            // Неизменившиеся игроки пропускаются без поиска биома и сборки записи
+            BlockPos blockPos = source.blockPos(index);
+            String teamName = source.teamName(index);
+            if (!tracker.observe(playerUUID, username, teamName, blockPos, currentTime)) {
                 continue;
             }
             
-            // Обновляем время последнего обнаружения
-            lastDetectionTime.put(playerUUID, currentTime);
-            
-            // Получаем биом
-            Biome biome = level.getBiome(player.blockPosition()).value();
-            
-            // Добавляем игрока в кэш
-            PlayerCache cache = PlayerTrackerMod.getInstance().getPlayerCache();
-            if (cache != null) {
-                cache.addPlayer(playerUUID, player.getName().getString(), targetPos, biome, playerPos);
-                
-                // Записываем в статистику
-                PlayerStats stats = PlayerTrackerMod.getInstance().getPlayerStats();
-                if (stats != null) {
-                    long sessionDuration = 1000; // Примерная длительность сессии
-                    stats.recordPlayerAppearance(playerUUID, player.getName().getString(), 
-                        player.blockPosition(), biome, sessionDuration);
-                }
-            }
+            int biomeId = source.biomeId(index, blockPos);
+            tracker.changed(playerUUID, username, teamName, source.position(index), blockPos, biomeId, currentTime);
         }
-        
-        // Очищаем старые записи о времени обнаружения
-        cleanupOldDetectionTimes();
     }
-
-    private static boolean isPlayerInFOV(Vec3 playerPos, Vec3 targetPos, Vec3 playerLookDir) {
-        if (!Config.FOV_FILTER.get()) {
-            return true;
-        }
-        
-        Vec3 directionToTarget = targetPos.subtract(playerPos).normalize();
-        double dotProduct = playerLookDir.dot(directionToTarget);
-        double angle = Math.acos(Math.max(-1.0, Math.min(1.0, dotProduct)));
-        double fovRadians = Math.toRadians(Config.FOV_ANGLE.get());
-        
-        return angle <= fovRadians / 2.0;
+    
+    /**
+     * Кандидаты цикла по номеру в FovCuller
+     */
+    interface Candidates {
+        UUID uuid(int index);
+        String username(int index);
+        String teamName(int index);
+        BlockPos blockPos(int index);
+        Vec3 position(int index);
+        int biomeId(int index, BlockPos blockPos);
     }
-
-    private static void cleanupOldDetectionTimes() {
-        long currentTime = System.currentTimeMillis();
-        long maxAge = 60000; // 1 минута
+    
+    // Кандидаты из мира клиента: сущности в candidates, мир задаётся на время цикла
+    private static class WorldCandidates implements Candidates {
+        Level level;
         
-        lastDetectionTime.entrySet().removeIf(entry -> 
-            (currentTime - entry.getValue()) > maxAge
-        );
-    }
-
-    // Метод для проверки валидности игрока
-    public static boolean isValidPlayer(String username) {
-        if (!Config.FILTER_NPCS.get()) {
-            return true;
+        @Override
+        public UUID uuid(int index) {
+            return candidates[index].getUUID();
         }
         
-        if (username == null || username.isEmpty()) {
-            return false;
+        // Ник из профиля - без создания Component на каждом цикле
+        @Override
+        public String username(int index) {
+            return candidates[index].getGameProfile().getName();
         }
         
-        if (username.length() < 3) {
-            return false;
+        @Override
+        public String teamName(int index) {
+            PlayerTeam team = candidates[index].getTeam();
+            return team != null ? team.getName() : null;
         }
         
-        if (username.matches(".*[^a-zA-Z0-9_].*")) {
-            return false;
+        @Override
+        public BlockPos blockPos(int index) {
+            return candidates[index].blockPosition();
         }
         
-        String lowerUsername = username.toLowerCase();
-        if (lowerUsername.contains("bot") || 
-            lowerUsername.contains("npc") || 
-            lowerUsername.contains("admin") ||
-            lowerUsername.contains("mod") ||
-            lowerUsername.contains("helper")) {
-            return false;
+        @Override
+        public Vec3 position(int index) {
+            return candidates[index].position();
         }
         
-        return true;
+        // Из кэша секций - повторный поиск по миру не нужен
+        @Override
+        public int biomeId(int index, BlockPos blockPos) {
+            return BiomeCache.biomeIdAt(level, blockPos);
+        }
+    }
+
+    /**
+     * Публикует отсортированный снимок после применения цикла обнаружения к кэшу.
+     * Читатели получают его одной volatile-ссылкой без блокировок и сортировки
+     */
+    public static void publishSnapshot(PlayerCache cache, DetectionBatch batch) {
+        Config.SortMode sortMode = Config.SORT_MODE.get();
+        VisiblePlayers visible = cache.query(
+            batch.getViewerPos(),
+            Config.MAX_DETECTION_DISTANCE.get(),
+            sortMode,
+            Integer.MAX_VALUE
+        );
+        snapshot = TrackerSnapshot.of(batch.getSequence(), sortMode, visible);
     }
 
-    // Метод для принудительного сканирования игроков
+    public static TrackerSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    // Метод для проверки валидности игрока
+    public static boolean isValidPlayer(String username) {
+        return PlayerFilter.isValid(username);
+    }
+
+    // Метод для принудительного сканирования игроков (только с игрового потока)
     public static void forceScan() {
-        detectPlayers();
+        TrackerScheduler.runNow();
     }
 
-    // Метод для получения списка обнаруженных игроков
+    // Метод для получения списка обнаруженных игроков (из последнего снимка)
     public static List<PlayerData> getDetectedPlayers() {
-        PlayerCache cache = PlayerTrackerMod.getInstance().getPlayerCache();
-        if (cache == null) {
-            return List.of();
-        }
-        
-        Minecraft minecraft = Minecraft.getInstance();
-        LocalPlayer localPlayer = minecraft.player;
-        
-        if (localPlayer == null) {
-            return List.of();
-        }
-        
-        return cache.getVisiblePlayers(
-            localPlayer.position(),
-            Config.MAX_DETECTION_DISTANCE.get(),
-            Config.SORT_MODE.get()
-        );
+        return snapshot.getPlayers();
     }
 
     // Метод для проверки, находится ли игрок в зоне видимости
@@ -209,7 +224,10 @@ public class PlayerDetector {
 
     // Метод для очистки кэша обнаружения
     public static void clearDetectionCache() {
-        lastDetectionTime.clear();
+        deltaTracker.clear();
+        PlayerFilter.clearCache();
+        BiomeCache.clear();
+        snapshot = TrackerSnapshot.EMPTY;
         
         PlayerCache cache = PlayerTrackerMod.getInstance().getPlayerCache();
         if (cache != null) {
@@ -219,7 +237,7 @@ public class PlayerDetector {
 
     // Метод для получения статистики обнаружения
     public static String getDetectionStats() {
-        int totalDetected = lastDetectionTime.size();
+        int totalDetected = deltaTracker.getTrackedCount();
         int totalCached = 0;
         
         PlayerCache cache = PlayerTrackerMod.getInstance().getPlayerCache();
@@ -229,7 +247,10 @@ public class PlayerDetector {
         
         totalCached = cache.getCacheSize();
         
-        return String.format("Обнаружено: %d, В кэше: %d, Тиков: %d", 
-            totalDetected, totalCached, tickCounter);
+        return String.format("Обнаружено: %d, В кэше: %d, Циклов: %d, Тиков: %d, "
+                + "Изменилось: %d, Без изменений: %d (за всё время: %d / %d)",
+            totalDetected, totalCached, detectionCycles, TrackerScheduler.getCurrentTick(),
+            deltaTracker.getChangedCount(), deltaTracker.getUnchangedCount(), totalChanged, totalUnchanged)
+            + "\nБиомы: " + BiomeCache.getStats();
     }
 }
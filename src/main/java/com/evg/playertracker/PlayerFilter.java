@@ -0,0 +1,213 @@
+package com.evg.playertracker;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PlayerFilter - фильтр NPC для детектора и HUD.
+ * Проверка символов выполняется простым проходом без регулярных выражений,
+ * запрещённые подстроки ищутся автоматом Ахо-Корасик за один проход по имени,
+ * а результат кэшируется по UUID до смены имени или списка запрещённых слов
+ */
+public class PlayerFilter {
+    private static final int MIN_USERNAME_LENGTH = 3;
+    private static final int MAX_CACHED_VERDICTS = 4096;
+    // Алфавит допустимого ника: a-z, 0-9, '_' (регистр не различается)
+    private static final int ALPHABET_SIZE = 26 + 10 + 1;
+
+    private static final Map<UUID, Verdict> verdicts = new ConcurrentHashMap<>();
+    private static volatile Matcher matcher = Matcher.build(List.of(), 0);
+    private static volatile List<? extends String> matcherSource;
+
+    /**
+     * Проверка с кэшем по UUID - используется детектором на каждом цикле
+     */
+    public static boolean isValid(UUID uuid, String username) {
+        if (!Config.FILTER_NPCS.get()) {
+            return true;
+        }
+
+        Matcher current = currentMatcher();
+        Verdict verdict = verdicts.get(uuid);
+        if (verdict != null && verdict.generation == current.generation && verdict.username.equals(username)) {
+            return verdict.valid;
+        }
+
+        boolean valid = evaluate(username, current);
+        if (verdicts.size() >= MAX_CACHED_VERDICTS) {
+            verdicts.clear();
+        }
+        verdicts.put(uuid, new Verdict(username, valid, current.generation));
+        return valid;
+    }
+
+    // Проверка без кэша (когда UUID неизвестен)
+    public static boolean isValid(String username) {
+        if (!Config.FILTER_NPCS.get()) {
+            return true;
+        }
+        return evaluate(username, currentMatcher());
+    }
+
+    public static void clearCache() {
+        verdicts.clear();
+    }
+
+    private static boolean evaluate(String username, Matcher current) {
+        if (username == null || username.length() < MIN_USERNAME_LENGTH) {
+            return false;
+        }
+
+        // Имена с необычными символами
+        for (int i = 0; i < username.length(); i++) {
+            if (symbolOf(username.charAt(i)) < 0) {
+                return false;
+            }
+        }
+
+        // Имена, которые выглядят как боты
+        return !current.matchesAny(username);
+    }
+
+    private static Matcher currentMatcher() {
+        List<? extends String> source = Config.NPC_BLOCKLIST.get();
+        Matcher current = matcher;
+        if (source != matcherSource) {
+            synchronized (PlayerFilter.class) {
+                if (source != matcherSource) {
+                    current = Matcher.build(source, matcher.generation + 1);
+                    matcher = current;
+                    matcherSource = source;
+                    verdicts.clear();
+                }
+                current = matcher;
+            }
+        }
+        return current;
+    }
+
+    private static int symbolOf(char c) {
+        if (c >= 'a' && c <= 'z') return c - 'a';
+        if (c >= 'A' && c <= 'Z') return c - 'A';
+        if (c >= '0' && c <= '9') return 26 + (c - '0');
+        if (c == '_') return 36;
+        return -1;
+    }
+
+    private static class Verdict {
+        final String username;
+        final boolean valid;
+        final int generation;
+
+        Verdict(String username, boolean valid, int generation) {
+            this.username = username;
+            this.valid = valid;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Автомат Ахо-Корасик, развёрнутый в полную таблицу переходов
+     */
+    private static class Matcher {
+        final int generation;
+        private final int[][] transitions;
+        private final boolean[] terminal;
+
+        private Matcher(int generation, int[][] transitions, boolean[] terminal) {
+            this.generation = generation;
+            this.transitions = transitions;
+            this.terminal = terminal;
+        }
+
+        static Matcher build(List<? extends String> terms, int generation) {
+            List<int[]> trie = new ArrayList<>();
+            List<Boolean> ends = new ArrayList<>();
+            trie.add(newState());
+            ends.add(false);
+
+            for (String term : terms) {
+                if (term == null || term.isEmpty()) {
+                    continue;
+                }
+                String lower = term.toLowerCase(Locale.ROOT);
+                int state = 0;
+                boolean usable = true;
+                for (int i = 0; i < lower.length(); i++) {
+                    int symbol = symbolOf(lower.charAt(i));
+                    if (symbol < 0) {
+                        // Слово с недопустимыми символами не может встретиться в валидном нике
+                        usable = false;
+                        break;
+                    }
+                    if (trie.get(state)[symbol] < 0) {
+                        trie.get(state)[symbol] = trie.size();
+                        trie.add(newState());
+                        ends.add(false);
+                    }
+                    state = trie.get(state)[symbol];
+                }
+                if (usable) {
+                    ends.set(state, true);
+                }
+            }
+
+            int[][] transitions = trie.toArray(new int[0][]);
+            boolean[] terminal = new boolean[transitions.length];
+            for (int i = 0; i < terminal.length; i++) {
+                terminal[i] = ends.get(i);
+            }
+
+            // Обход в ширину: ссылки неудач и достройка переходов
+            int[] fail = new int[transitions.length];
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            for (int symbol = 0; symbol < ALPHABET_SIZE; symbol++) {
+                int next = transitions[0][symbol];
+                if (next < 0) {
+                    transitions[0][symbol] = 0;
+                } else {
+                    fail[next] = 0;
+                    queue.add(next);
+                }
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                terminal[state] |= terminal[fail[state]];
+                for (int symbol = 0; symbol < ALPHABET_SIZE; symbol++) {
+                    int next = transitions[state][symbol];
+                    if (next < 0) {
+                        transitions[state][symbol] = transitions[fail[state]][symbol];
+                    } else {
+                        fail[next] = transitions[fail[state]][symbol];
+                        queue.add(next);
+                    }
+                }
+            }
+
+            return new Matcher(generation, transitions, terminal);
+        }
+
+        boolean matchesAny(String username) {
+            int state = 0;
+            for (int i = 0; i < username.length(); i++) {
+                state = transitions[state][symbolOf(username.charAt(i))];
+                if (terminal[state]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static int[] newState() {
+            int[] state = new int[ALPHABET_SIZE];
+            Arrays.fill(state, -1);
+            return state;
+        }
+    }
+}
@@ -2,279 +2,960 @@ package com.evg.playertracker;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 import net.minecraft.core.BlockPos;
-import net.minecraft.world.level.biome.Biome;
 
 import java.io.*;
+import java.lang.reflect.Modifier;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 public class PlayerStats {
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
-    private static final String STATS_FILE = "player_stats.json";
+    // Только для чтения старого JSON; transient-поля читаются, чтобы дошла строка биома старых появлений
+    private static final Gson GSON = new GsonBuilder().excludeFieldsWithModifiers(Modifier.STATIC).create();
+    private static final String STATS_FILE = "player_stats.dat";
+    // Снимок в JSON из прошлых версий - читается один раз и переводится в индексированный формат
+    private static final String LEGACY_STATS_FILE = "player_stats.json";
+    private static final String JOURNAL_DIR = "player_stats_journal";
     private static final String BACKUP_DIR = "backups";
+    private static final String ARCHIVE_DIR = "player_stats_archive";
+    private static final int MAX_BACKUPS = 10;
+    // Сжатие журнала в снимок: по объёму журнала или каждые N сохранений
+    private static final long JOURNAL_COMPACTION_BYTES = 4L * 1024 * 1024;
+    private static final int SAVES_PER_COMPACTION = 12;
+    // История игроков, не появлявшихся дольше этого, после сжатия выгружается из памяти
+    private static final long HOT_HISTORY_MS = 10 * 60 * 1000L;
+    // Фоновое удержание: период прохода и число игроков, обрабатываемых за проход
+    private static final long RETENTION_PERIOD_MS = 60 * 1000L;
+    private static final int RETENTION_BATCH = 256;
+    // Число сегментов статистики (степень двойки)
+    private static final int SHARD_COUNT = 16;
     
-    private final Map<UUID, PlayerStatsData> playerStats = new ConcurrentHashMap<>();
+    // Игроки разложены по сегментам по UUID; у каждого сегмента своя блокировка,
+    // поэтому запись появления и снятие снимка не останавливают остальные сегменты
+    private final Shard[] shards = new Shard[SHARD_COUNT];
+    private final Path baseDirectory;
+    private final Path statsPath;
+    private final StatsSnapshot snapshot;
+    private final Path journalDirectory;
+    private final StatsJournal journal;
+    private final StatsBackups backups;
+    private final AppearanceArchive archive;
+    private final AtomicLong journalSequence = new AtomicLong();
+    private int savesSinceCompaction;
+    
+    // Единственный фоновый поток сохранения: записи копятся и сбрасываются раз в период
+    private final ScheduledThreadPoolExecutor flushExecutor = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "PlayerTracker-Stats");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private final AtomicLong pendingCount = new AtomicLong();
+    private final AtomicLong flushedCount = new AtomicLong();
+    private final AtomicLong flushRuns = new AtomicLong();
+    private volatile long lastFlushTime;
+    private volatile boolean shutdown;
     private String serverName;
-    private long lastUpdated;
-    private int totalUniquePlayers;
+    private final AtomicLong lastUpdated = new AtomicLong();
+    private final LongAdder uniquePlayers = new LongAdder();
     
     public PlayerStats(String serverName) {
+        this(serverName, Paths.get(""));
+    }
+    
+    // Все файлы статистики располагаются относительно baseDirectory
+    public PlayerStats(String serverName, Path baseDirectory) {
+        this.baseDirectory = baseDirectory;
+        this.statsPath = baseDirectory.resolve(STATS_FILE);
+        this.snapshot = new StatsSnapshot(statsPath);
+        this.journalDirectory = baseDirectory.resolve(JOURNAL_DIR);
+        this.journal = new StatsJournal(journalDirectory);
+        this.backups = new StatsBackups(baseDirectory.resolve(BACKUP_DIR), MAX_BACKUPS);
+        this.archive = new AppearanceArchive(baseDirectory.resolve(ARCHIVE_DIR));
         this.serverName = serverName;
-        this.lastUpdated = System.currentTimeMillis();
-        this.totalUniquePlayers = 0;
-        loadStats();
+        this.lastUpdated.set(System.currentTimeMillis());
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shards[i] = new Shard();
+        }
+        boolean migrated = loadStats();
+        try {
+            archive.open();
+        } catch (IOException e) {
+            PlayerTrackerMod.LOGGER.error("Ошибка открытия архива появлений", e);
+        }
+        scheduleNextFlush();
+        scheduleNextRetention();
+        if (migrated) {
+            requestCompaction();
+        } else if (Config.ARCHIVE_APPEARANCES.get() && archive.isEmpty() && getTotalUniquePlayers() > 0) {
+            // Архив заполнится из истории игроков, не дожидаясь первого появления
+            requestCompaction();
+        }
     }
     
-    public void recordPlayerAppearance(UUID uuid, String username, BlockPos position, Biome biome, long sessionDuration) {
-        PlayerStatsData stats = playerStats.computeIfAbsent(uuid, k -> {
-            totalUniquePlayers++;
-            return new PlayerStatsData(username);
-        });
-        
-        stats.recordAppearance(position, biome, sessionDuration);
-        lastUpdated = System.currentTimeMillis();
-        
-        // Автосохранение если включено
-        if (Config.AUTO_SAVE_STATS.get()) {
-            scheduleAutoSave();
+    /**
+     * Наблюдение игрока. В статистику пишутся только точки маршрута сессии
+     * (см. SessionTracker), остальные наблюдения лишь продлевают сессию
+     */
+    public void recordPlayerAppearance(UUID uuid, String username, BlockPos position, int biomeId) {
+        long now = System.currentTimeMillis();
+        long gapMillis = sessionGapMillis();
+        Shard shard = shardOf(uuid);
+        hydrateHistory(shard, uuid);
+        synchronized (shard) {
+            shard.sessions.sighting(uuid, username, position.getX(), position.getY(), position.getZ(), biomeId,
+                now, gapMillis, this::appendAppearance);
+        }
+    }
+    
+    /**
+     * Закрывает сессии игроков, не наблюдавшихся дольше промежутка из конфига
+     */
+    public int closeIdleSessions() {
+        long now = System.currentTimeMillis();
+        long gapMillis = sessionGapMillis();
+        int closed = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                closed += shard.sessions.closeIdle(now, gapMillis, this::appendAppearance);
+            }
+        }
+        return closed;
+    }
+    
+    public int getOpenSessionCount() {
+        int open = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                open += shard.sessions.getOpenCount();
+            }
+        }
+        return open;
+    }
+    
+    /**
+     * Промежуток закрытия сессии. Неподвижный игрок подтверждается раз в
+     * DeltaTracker.REFRESH_INTERVAL_MS и доходит до статистики только на ближайшей записи,
+     * поэтому промежуток не меньше их суммы с запасом в ещё один интервал записи
+     */
+    static long sessionGapMillis() {
+        long statsIntervalMillis = Config.STATS_UPDATE_INTERVAL.get() * 50L;
+        long minimum = DeltaTracker.REFRESH_INTERVAL_MS + 2 * statsIntervalMillis;
+        return Math.max(Config.SESSION_GAP_SECONDS.get() * 1000L, minimum);
+    }
+    
+    /**
+     * Загружает выгруженную историю вернувшегося игрока без блокировки сегмента:
+     * чтение снимка не задерживает поток обнаружения под блокировкой и не ждёт её
+     * во время замены снимка. История ставится, только если игрок за это время не сменился
+     * и история всё ещё выгружена - пока она на диске, игрок не меняется и снимок её не трогает
+     */
+    private void hydrateHistory(Shard shard, UUID uuid) {
+        PlayerStatsData data;
+        synchronized (shard) {
+            data = shard.players.get(uuid);
+            if (data == null || data.history != null) {
+                return;
+            }
+        }
+        AppearanceHistory loaded = loadHistory(uuid);
+        synchronized (shard) {
+            if (shard.players.get(uuid) == data && data.history == null) {
+                data.history = loaded;
+            }
         }
     }
     
+    // Блокировка сегмента повторно входима: точки маршрута приходят из-под неё же
+    private void appendAppearance(UUID uuid, String username, AppearanceData appearance) {
+        Shard shard = shardOf(uuid);
+        synchronized (shard) {
+            // Номер выдаётся под блокировкой сегмента: внутри сегмента порядок номеров
+            // совпадает с порядком применения, на этом держится пропуск записей при загрузке
+            long sequence = journalSequence.incrementAndGet();
+            applyAppearance(shard, uuid, username, appearance, sequence);
+            shard.pending.add(new StatsJournal.Record(sequence, uuid, username, appearance));
+        }
+        
+        // Только помечаем данные изменёнными - запись выполнит поток сохранения
+        pendingCount.incrementAndGet();
+        dirty.set(true);
+    }
+    
+    // Возвращается копия - её можно читать, пока поток обнаружения дописывает историю.
+    // Выгруженная история читается из снимка
     public PlayerStatsData getPlayerStats(UUID uuid) {
-        return playerStats.get(uuid);
+        PlayerStatsData copy;
+        Shard shard = shardOf(uuid);
+        synchronized (shard) {
+            PlayerStatsData data = shard.players.get(uuid);
+            if (data == null) {
+                return null;
+            }
+            copy = data.copy();
+        }
+        if (copy.history == null) {
+            copy.history = loadHistory(uuid);
+        }
+        return copy;
+    }
+    
+    // Имя без копирования истории; null, если игрок неизвестен
+    public String getUsername(UUID uuid) {
+        Shard shard = shardOf(uuid);
+        synchronized (shard) {
+            PlayerStatsData data = shard.players.get(uuid);
+            return data != null ? data.username : null;
+        }
     }
     
     public Map<UUID, PlayerStatsData> getAllPlayerStats() {
-        return new HashMap<>(playerStats);
+        return snapshotPlayers();
     }
     
     public int getTotalUniquePlayers() {
-        return totalUniquePlayers;
+        return (int) uniquePlayers.sum();
     }
     
     public long getLastUpdated() {
-        return lastUpdated;
+        return lastUpdated.get();
+    }
+    
+    public StatsExporter.Result exportStats(String format) throws IOException {
+        return new StatsExporter(this).export(StatsExporter.Format.parse(format), baseDirectory);
+    }
+    
+    /**
+     * Выборка появлений из столбцового архива (если он включён); данные читаются с диска
+     * отображением в память. Возвращает число просмотренных сегментов архива
+     */
+    public int queryAppearances(AppearanceArchive.Query query, AppearanceArchive.RowVisitor visitor) throws IOException {
+        return archive.query(query, visitor);
     }
     
-    public void exportStats(String format) throws IOException {
-        switch (format.toLowerCase()) {
-            case "json":
-                exportToJSON();
-                break;
-            case "csv":
-                exportToCSV();
-                break;
-            default:
-                throw new IllegalArgumentException("Неподдерживаемый формат: " + format);
+    public String getServerName() {
+        return serverName;
+    }
+    
+    // UUID всех игроков на момент вызова - для постраничного обхода без копирования истории
+    List<UUID> getPlayerIds() {
+        List<UUID> result = new ArrayList<>();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                result.addAll(shard.players.keySet());
+            }
         }
+        return result;
     }
     
     public void resetStats() {
-        playerStats.clear();
-        totalUniquePlayers = 0;
-        lastUpdated = System.currentTimeMillis();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                // Счётчик уменьшается вместе с очисткой сегмента - параллельные вставки не теряются
+                uniquePlayers.add(-shard.players.size());
+                shard.clear();
+            }
+        }
         try {
-            saveStats();
+            archive.clear();
         } catch (IOException e) {
-            PlayerTrackerMod.LOGGER.error("Ошибка сохранения статистики при сбросе", e);
+            PlayerTrackerMod.LOGGER.error("Ошибка очистки архива появлений", e);
         }
+        lastUpdated.set(System.currentTimeMillis());
+        requestCompaction();
     }
     
     public void resetPlayerStats(UUID uuid) {
-        PlayerStatsData removed = playerStats.remove(uuid);
+        PlayerStatsData removed;
+        Shard shard = shardOf(uuid);
+        synchronized (shard) {
+            shard.sessions.forget(uuid);
+            removed = shard.players.remove(uuid);
+            if (removed != null) {
+                shard.unindex(uuid);
+                uniquePlayers.decrement();
+            }
+        }
         if (removed != null) {
-            totalUniquePlayers--;
-            lastUpdated = System.currentTimeMillis();
+            lastUpdated.set(System.currentTimeMillis());
+            requestCompaction();
+        }
+    }
+    
+    /**
+     * Инкрементальный бэкап: снимок и сегменты журнала попадают в хранилище ссылками,
+     * журнал перед этим не сжимается. Возвращает имя бэкапа
+     */
+    public synchronized String createBackup() throws IOException {
+        // Сбрасываем накопленные записи, чтобы журнал содержал все данные
+        saveStats(false);
+        return backupCurrentState(true);
+    }
+    
+    public List<String> listBackups() throws IOException {
+        return backups.list();
+    }
+    
+    /**
+     * Восстанавливает статистику из бэкапа: файлы возвращаются на место,
+     * состояние в памяти загружается заново. Запись появлений на это время останавливается
+     */
+    public synchronized void restoreBackup(String name) throws IOException {
+        StatsBackups.Manifest manifest = backups.read(name);
+        withAllShards(0, () -> {
+            journal.deleteSegments(journal.roll());
+            snapshot.install(manifest.snapshot != null ? backups.fileOf(manifest.snapshot) : null);
+            for (StatsBackups.FileEntry segment : manifest.segments) {
+                StatsBackups.linkOrCopy(backups.fileOf(segment), journalDirectory.resolve(segment.fileName));
+            }
+            
+            for (Shard shard : shards) {
+                pendingCount.addAndGet(-shard.pending.size());
+                shard.pending.clear();
+                shard.clear();
+            }
+            uniquePlayers.reset();
+            loadStats();
+        });
+        PlayerTrackerMod.LOGGER.info("Статистика восстановлена из бэкапа {}", name);
+    }
+    
+    // Вызывается под монитором PlayerStats: снимок и журнал в это время не меняются
+    private String backupCurrentState(boolean withJournal) throws IOException {
+        List<Path> segments = withJournal ? journal.roll() : List.of();
+        return backups.create(statsPath, segments);
+    }
+    
+    // Захватывает блокировки всех сегментов по порядку и выполняет action
+    private void withAllShards(int index, IOAction action) throws IOException {
+        if (index == shards.length) {
+            action.run();
+            return;
+        }
+        synchronized (shards[index]) {
+            withAllShards(index + 1, action);
+        }
+    }
+    
+    private void scheduleNextRetention() {
+        if (shutdown) {
+            return;
+        }
+        flushExecutor.schedule(() -> {
             try {
-                saveStats();
-            } catch (IOException e) {
-                PlayerTrackerMod.LOGGER.error("Ошибка сохранения статистики при сбросе игрока", e);
+                runRetention(RETENTION_BATCH);
+            } catch (RuntimeException e) {
+                PlayerTrackerMod.LOGGER.error("Ошибка очистки истории статистики", e);
+            } finally {
+                scheduleNextRetention();
             }
+        }, RETENTION_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Проход удержания по индексам последнего появления: берутся только игроки,
+     * чьи данные целиком старше порога уровня, не больше budget за проход.
+     * Остальные доберутся следующими проходами. Возвращает число обработанных игроков
+     */
+    int runRetention(int budget) {
+        long now = System.currentTimeMillis();
+        long fineCutoff = fineCutoff(now);
+        long hourlyCutoff = hourlyCutoff(now);
+        int processed = 0;
+        for (Shard shard : shards) {
+            int limit = Math.max(1, budget / SHARD_COUNT);
+            List<UUID> candidates;
+            synchronized (shard) {
+                candidates = shard.hourly.olderThan(hourlyCutoff, limit);
+                candidates.addAll(shard.full.olderThan(fineCutoff, limit - candidates.size()));
+            }
+            for (UUID uuid : candidates) {
+                if (retain(shard, uuid, fineCutoff, hourlyCutoff)) {
+                    processed++;
+                }
+            }
+        }
+        try {
+            // Архив нужен для анализа за весь срок хранения - держится столько же, сколько часовые сводки
+            archive.dropOlderThan(hourlyCutoff);
+        } catch (IOException e) {
+            PlayerTrackerMod.LOGGER.error("Ошибка очистки архива появлений", e);
         }
+        return processed;
     }
     
-    public void createBackup() throws IOException {
-        Path backupDir = Paths.get(BACKUP_DIR);
-        if (!Files.exists(backupDir)) {
-            Files.createDirectories(backupDir);
+    private boolean retain(Shard shard, UUID uuid, long fineCutoff, long hourlyCutoff) {
+        PlayerStatsData data;
+        long version;
+        synchronized (shard) {
+            data = shard.players.get(uuid);
+            if (data == null) {
+                return false;
+            }
+            version = data.lastSequence;
         }
+        // Выгруженная история читается без блокировки сегмента
+        AppearanceHistory loaded = data.history == null ? loadHistory(uuid) : null;
         
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
-        String backupFileName = String.format("player_stats_backup_%s.json", timestamp);
-        Path backupPath = backupDir.resolve(backupFileName);
-        
-        // Создаем копию текущего файла
-        Path statsPath = Paths.get(STATS_FILE);
-        if (Files.exists(statsPath)) {
-            Files.copy(statsPath, backupPath);
+        synchronized (shard) {
+            if (shard.players.get(uuid) != data || data.lastSequence != version) {
+                // Игрок появился снова - его история уже не старая
+                return false;
+            }
+            if (data.history == null) {
+                data.history = loaded;
+            }
+            if (data.history.prune(fineCutoff, hourlyCutoff)) {
+                markChanged(data);
+            }
+            data.retentionTier = data.history.getTier();
+            shard.index(uuid, data);
+        }
+        return true;
+    }
+    
+    /**
+     * Превышен размер снимка: история снимается с игроков, дольше всех не появлявшихся,
+     * пока не освободится excessBytes. Индексы сегментов уже упорядочены -
+     * они сливаются, а не сортируются заново
+     */
+    private void shrinkHistories(long excessBytes) {
+        if (excessBytes <= 0) {
+            return;
+        }
+        List<List<Long>> times = new ArrayList<>();
+        List<List<UUID>> uuids = new ArrayList<>();
+        List<Shard> owners = new ArrayList<>();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (LastSeenIndex index : new LastSeenIndex[] { shard.full, shard.hourly }) {
+                    List<Long> indexTimes = new ArrayList<>(index.size());
+                    List<UUID> indexUuids = new ArrayList<>(index.size());
+                    index.copyTo(indexTimes, indexUuids);
+                    times.add(indexTimes);
+                    uuids.add(indexUuids);
+                    owners.add(shard);
+                }
+            }
         }
         
-        // Очищаем старые бэкапы если превышен лимит
-        cleanupOldBackups();
-    }
-    
-    private void scheduleAutoSave() {
-        // Простая реализация автосохранения
-        // В реальном приложении здесь должен быть планировщик задач
-        Timer timer = new Timer();
-        timer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    saveStats();
-                } catch (IOException e) {
-                    PlayerTrackerMod.LOGGER.error("Ошибка автосохранения статистики", e);
+        // Слияние k упорядоченных списков: в куче - текущая позиция каждого списка
+        PriorityQueue<int[]> heads = new PriorityQueue<>(
+            Comparator.comparingLong((int[] head) -> times.get(head[0]).get(head[1])));
+        for (int i = 0; i < times.size(); i++) {
+            if (!times.get(i).isEmpty()) {
+                heads.add(new int[] { i, 0 });
+            }
+        }
+        long freed = 0;
+        int released = 0;
+        while (freed < excessBytes && !heads.isEmpty()) {
+            int[] head = heads.poll();
+            UUID uuid = uuids.get(head[0]).get(head[1]);
+            Shard shard = owners.get(head[0]);
+            synchronized (shard) {
+                PlayerStatsData data = shard.players.get(uuid);
+                if (data != null && data.retentionTier != AppearanceHistory.TIER_SUMMARY) {
+                    freed += data.history != null ? data.history.encodedSize() : snapshot.historyBytes(uuid);
+                    data.history = new AppearanceHistory();
+                    data.retentionTier = AppearanceHistory.TIER_SUMMARY;
+                    markChanged(data);
+                    shard.index(uuid, data);
+                    released++;
                 }
             }
-        }, Config.STATS_SAVE_INTERVAL.get() * 60 * 1000L);
+            if (head[1] + 1 < times.get(head[0]).size()) {
+                heads.add(new int[] { head[0], head[1] + 1 });
+            }
+        }
+        PlayerTrackerMod.LOGGER.info("Размер статистики превышен: история снята с {} игроков", released);
     }
     
-    private void saveStats() throws IOException {
-        StatsContainer container = new StatsContainer();
-        container.serverInfo = new ServerInfo(serverName, lastUpdated, totalUniquePlayers);
-        container.players = playerStats;
-        
-        String json = GSON.toJson(container);
-        
-        // Проверяем размер файла
-        Path statsPath = Paths.get(STATS_FILE);
-        if (Files.exists(statsPath) && Files.size(statsPath) > Config.MAX_STATS_FILE_SIZE.get() * 1024 * 1024) {
-            // Создаем бэкап перед очисткой
-            if (Config.AUTO_BACKUP_STATS.get()) {
-                createBackup();
+    // Изменение вне журнала (очистка): новый номер не даёт выгрузить историю
+    // до следующего снимка и не влияет на пропуск записей журнала при загрузке
+    private void markChanged(PlayerStatsData data) {
+        data.lastSequence = journalSequence.incrementAndGet();
+        dirty.set(true);
+    }
+    
+    private static long fineCutoff(long now) {
+        return now - Config.RETENTION_RAW_DAYS.get() * 24L * 3600 * 1000;
+    }
+    
+    // Часовые сводки хранятся не меньше точных записей
+    private static long hourlyCutoff(long now) {
+        return Math.min(fineCutoff(now), now - Config.RETENTION_HOURLY_WEEKS.get() * 7L * 24 * 3600 * 1000);
+    }
+    
+    private void scheduleNextFlush() {
+        if (shutdown) {
+            return;
+        }
+        // Период читается заново при каждом планировании, поэтому изменение конфига
+        // вступает в силу со следующего цикла
+        long periodMillis = Config.STATS_SAVE_INTERVAL.get() * 60 * 1000L;
+        flushExecutor.schedule(this::periodicFlush, periodMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    private void periodicFlush() {
+        try {
+            if (Config.AUTO_SAVE_STATS.get()) {
+                flushIfDirty(false);
             }
-            
-            // Очищаем старые записи
-            cleanupOldEntries();
+        } catch (IOException e) {
+            PlayerTrackerMod.LOGGER.error("Ошибка автосохранения статистики", e);
+        } finally {
+            scheduleNextFlush();
         }
-        
-        try (Writer writer = new FileWriter(STATS_FILE)) {
-            writer.write(json);
+    }
+    
+    private void requestCompaction() {
+        dirty.set(true);
+        if (shutdown) {
+            return;
         }
+        flushExecutor.execute(() -> {
+            try {
+                flushIfDirty(true);
+            } catch (IOException e) {
+                PlayerTrackerMod.LOGGER.error("Ошибка сохранения статистики при сбросе", e);
+            }
+        });
     }
     
-    private void loadStats() {
-        Path statsPath = Paths.get(STATS_FILE);
-        if (!Files.exists(statsPath)) {
+    private void flushIfDirty(boolean forceCompaction) throws IOException {
+        // Несколько запросов подряд сливаются в одну запись
+        if (!dirty.getAndSet(false)) {
             return;
         }
+        saveStats(forceCompaction);
+    }
+    
+    /**
+     * Останавливает поток сохранения и синхронно сбрасывает несохранённые данные
+     */
+    public void shutdown() {
+        if (shutdown) {
+            return;
+        }
+        shutdown = true;
+        // Отложенные сбросы отменяются, а выполняющийся дорабатывает: прерывание закрыло бы
+        // канал журнала посреди записи, и уже снятые с сегментов записи пропали бы
+        flushExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
         
-        try (Reader reader = new FileReader(STATS_FILE)) {
-            StatsContainer container = GSON.fromJson(reader, StatsContainer.class);
-            if (container != null) {
-                this.serverName = container.serverInfo.serverName;
-                this.lastUpdated = container.serverInfo.lastUpdated;
-                this.totalUniquePlayers = container.serverInfo.totalUniquePlayers;
-                if (container.players != null) {
-                    this.playerStats.putAll(container.players);
+        try {
+            for (Shard shard : shards) {
+                synchronized (shard) {
+                    shard.sessions.closeAll(this::appendAppearance);
                 }
             }
+            dirty.set(false);
+            saveStats(false);
+            archive.flush();
+            archive.close();
+            snapshot.close();
+            journal.close();
         } catch (IOException e) {
-            PlayerTrackerMod.LOGGER.error("Ошибка загрузки статистики", e);
+            PlayerTrackerMod.LOGGER.error("Ошибка сохранения статистики при завершении", e);
         }
     }
     
-    private void exportToJSON() throws IOException {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
-        String exportFileName = String.format("player_stats_export_%s.json", timestamp);
-        
-        StatsContainer container = new StatsContainer();
-        container.serverInfo = new ServerInfo(serverName, lastUpdated, totalUniquePlayers);
-        container.players = playerStats;
+    public Map<String, Object> getFlushStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pendingRecords", pendingCount.get());
+        stats.put("flushedRecords", flushedCount.get());
+        stats.put("flushRuns", flushRuns.get());
+        stats.put("journalBytes", journal.getSizeBytes());
+        stats.put("archiveSegments", archive.getSegmentCount());
+        stats.put("lastFlush", lastFlushTime == 0 ? "никогда" : new Date(lastFlushTime));
+        return stats;
+    }
+    
+    private void saveStats() throws IOException {
+        saveStats(false);
+    }
+    
+    /**
+     * Дописывает в журнал только новые записи; периодически сжимает журнал в снимок
+     */
+    synchronized void saveStats(boolean forceCompaction) throws IOException {
+        boolean archiving = Config.ARCHIVE_APPEARANCES.get();
+        // Архив включён, но пуст: он заполняется из истории игроков. Записи, снятые
+        // с сегмента вместе с историей, в ней уже есть и отдельно в архив не идут
+        boolean backfill = archiving && archive.isEmpty();
+        List<StatsJournal.Record> batch = new ArrayList<>();
+        List<StatsJournal.Record> historyRows = new ArrayList<>();
+        Map<UUID, String> unloaded = new HashMap<>();
+        long backfilled = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                batch.addAll(shard.pending);
+                shard.pending.clear();
+                if (backfill) {
+                    for (Map.Entry<UUID, PlayerStatsData> entry : shard.players.entrySet()) {
+                        PlayerStatsData data = entry.getValue();
+                        if (data.history == null) {
+                            unloaded.put(entry.getKey(), data.username);
+                        } else {
+                            addHistoryRows(entry.getKey(), data.username, data.history, historyRows);
+                        }
+                    }
+                }
+            }
+            if (backfill) {
+                archive.append(historyRows);
+                backfilled += historyRows.size();
+                historyRows.clear();
+            }
+        }
+        // Порядок записей внутри сегмента сохраняется; записи разных сегментов
+        // относятся к разным игрокам и от порядка между собой не зависят
+        journal.append(batch);
+        if (backfill) {
+            // Выгруженная история совпадает со снимком, а снимок меняется только здесь же
+            for (Map.Entry<UUID, String> entry : unloaded.entrySet()) {
+                addHistoryRows(entry.getKey(), entry.getValue(), loadHistory(entry.getKey()), historyRows);
+                archive.append(historyRows);
+                backfilled += historyRows.size();
+                historyRows.clear();
+            }
+            if (backfilled > 0) {
+                PlayerTrackerMod.LOGGER.info("Архив появлений заполнен из истории игроков: {} записей", backfilled);
+            }
+        } else if (archiving) {
+            archive.append(batch);
+        }
+        savesSinceCompaction++;
+        pendingCount.addAndGet(-batch.size());
+        flushedCount.addAndGet(batch.size());
+        flushRuns.incrementAndGet();
+        lastFlushTime = System.currentTimeMillis();
         
-        String json = GSON.toJson(container);
+        if (forceCompaction
+            || journal.getSizeBytes() >= JOURNAL_COMPACTION_BYTES
+            || savesSinceCompaction >= SAVES_PER_COMPACTION) {
+            compact();
+        }
+    }
+    
+    // Появления из истории игрока (точные выборки и свёрнутые корзины) в виде записей для архива
+    private static void addHistoryRows(UUID uuid, String username, AppearanceHistory history,
+                                       List<StatsJournal.Record> out) {
+        history.forEach((x, y, z, biomeId, timestamp, samples) ->
+            out.add(new StatsJournal.Record(0, uuid, username, new AppearanceData(x, y, z, biomeId, timestamp, 0))));
+    }
+    
+    // Вызывается из saveStats, поэтому журнал во время сжатия не дописывается
+    private void compact() throws IOException {
+        // Всё, что попало в запечатанные сегменты, уже применено и войдёт в снимок
+        List<Path> sealedSegments = journal.roll();
+        writeSnapshot();
         
-        try (Writer writer = new FileWriter(exportFileName)) {
-            writer.write(json);
+        // Проверяем размер файла
+        long maxBytes = Config.MAX_STATS_FILE_SIZE.get() * 1024L * 1024L;
+        if (Files.size(statsPath) > maxBytes) {
+            // Создаем бэкап перед сокращением; только что записанный снимок покрывает весь журнал
+            if (Config.AUTO_BACKUP_STATS.get()) {
+                backupCurrentState(false);
+            }
+            
+            // Снимаем историю с давно не появлявшихся игроков; сводки и счётчики остаются
+            // Запас в 10% - индекс снимка остаётся, а повторное сокращение на следующем сохранении дороже
+            shrinkHistories(Files.size(statsPath) - maxBytes + maxBytes / 10);
+            writeSnapshot();
         }
+        
+        journal.deleteSegments(sealedSegments);
+        savesSinceCompaction = 0;
+        Files.deleteIfExists(baseDirectory.resolve(LEGACY_STATS_FILE));
+        releaseColdHistories();
     }
     
-    private void exportToCSV() throws IOException {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
-        String exportFileName = String.format("player_stats_export_%s.csv", timestamp);
+    /**
+     * Снимок пишется по сегментам: каждый сегмент снимается под своей блокировкой
+     * и согласован сам по себе, запись в файл идёт уже без блокировки.
+     * Выгруженные истории переносятся из прошлого снимка без загрузки в память
+     */
+    private void writeSnapshot() throws IOException {
+        // Номер читается до обхода сегментов: всё, что выдано раньше, уже применено
+        long snapshotSequence = journalSequence.get();
         
-        try (PrintWriter writer = new PrintWriter(new FileWriter(exportFileName))) {
-            // Заголовок
-            writer.println("UUID,Username,First Seen,Last Seen,Total Sessions,Total Online Time,Appearances Count");
+        try (StatsSnapshot.Writer writer = snapshot.beginWrite()) {
+            List<UUID> uuids = new ArrayList<>();
+            List<PlayerStatsData> summaries = new ArrayList<>();
+            List<byte[]> histories = new ArrayList<>();
+            List<StatsJournal.Record> drained = new ArrayList<>();
+            int written = 0;
+            for (Shard shard : shards) {
+                synchronized (shard) {
+                    for (Map.Entry<UUID, PlayerStatsData> entry : shard.players.entrySet()) {
+                        PlayerStatsData data = entry.getValue();
+                        uuids.add(entry.getKey());
+                        summaries.add(data.copySummary());
+                        histories.add(data.history != null ? data.history.encode() : null);
+                    }
+                    // Всё, что ещё не попало в журнал, уже содержится в снимке,
+                    // но в архив появлений эти записи должны попасть отдельно
+                    pendingCount.addAndGet(-shard.pending.size());
+                    drained.addAll(shard.pending);
+                    shard.pending.clear();
+                }
+                for (int i = 0; i < uuids.size(); i++) {
+                    writer.writePlayer(uuids.get(i), summaries.get(i), histories.get(i));
+                }
+                written += uuids.size();
+                uuids.clear();
+                summaries.clear();
+                histories.clear();
+            }
+            if (Config.ARCHIVE_APPEARANCES.get()) {
+                archive.append(drained);
+            }
             
-            // Данные
-            for (Map.Entry<UUID, PlayerStatsData> entry : playerStats.entrySet()) {
-                PlayerStatsData stats = entry.getValue();
-                writer.printf("%s,%s,%s,%s,%d,%d,%d%n",
-                    entry.getKey(),
-                    stats.username,
-                    formatTimestamp(stats.firstSeen),
-                    formatTimestamp(stats.lastSeen),
-                    stats.totalSessions,
-                    stats.totalOnlineTime,
-                    stats.appearances.size()
-                );
+            StatsSnapshot.Header header = new StatsSnapshot.Header();
+            header.serverName = serverName;
+            header.lastUpdated = lastUpdated.get();
+            // Число реально записанных игроков: счётчик после обхода мог уйти вперёд
+            header.totalUniquePlayers = written;
+            header.journalSequence = snapshotSequence;
+            // Словарь берётся после игроков, чтобы содержать все id из их истории
+            writer.finish(header, BiomeDictionary.getNames());
+        }
+    }
+    
+    // Выгружает историю давно не появлявшихся игроков, если она целиком есть в снимке
+    private void releaseColdHistories() {
+        long cutoff = System.currentTimeMillis() - HOT_HISTORY_MS;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (Map.Entry<UUID, PlayerStatsData> entry : shard.players.entrySet()) {
+                    PlayerStatsData data = entry.getValue();
+                    // История игрока с открытой сессией понадобится для точки конца сессии
+                    if (data.history != null && data.lastSeen < cutoff
+                        && !shard.sessions.isOpen(entry.getKey())
+                        && snapshot.contains(entry.getKey(), data.lastSequence)) {
+                        data.history = null;
+                    }
+                }
             }
         }
     }
     
-    private String formatTimestamp(long timestamp) {
-        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault())
-            .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    private AppearanceHistory loadHistory(UUID uuid) {
+        try {
+            AppearanceHistory history = snapshot.readHistory(uuid);
+            if (history != null) {
+                return history;
+            }
+        } catch (IOException e) {
+            PlayerTrackerMod.LOGGER.error("Ошибка загрузки истории игрока {}", uuid, e);
+        }
+        return new AppearanceHistory();
     }
     
-    private void cleanupOldEntries() {
-        // Удаляем самые старые записи, оставляя только последние 1000
-        if (playerStats.size() > 1000) {
-            List<Map.Entry<UUID, PlayerStatsData>> sortedEntries = playerStats.entrySet().stream()
-                .sorted(Comparator.comparingLong(e -> e.getValue().lastSeen))
-                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-            
-            int toRemove = playerStats.size() - 1000;
-            for (int i = 0; i < toRemove && i < sortedEntries.size(); i++) {
-                playerStats.remove(sortedEntries.get(i).getKey());
+    private Shard shardOf(UUID uuid) {
+        int hash = uuid.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & (SHARD_COUNT - 1)];
+    }
+    
+    // Копия всех игроков, каждый сегмент снимается под своей блокировкой
+    private Map<UUID, PlayerStatsData> snapshotPlayers() {
+        Map<UUID, PlayerStatsData> result = new HashMap<>();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (Map.Entry<UUID, PlayerStatsData> entry : shard.players.entrySet()) {
+                    result.put(entry.getKey(), entry.getValue().copy());
+                }
             }
-            
-            totalUniquePlayers = playerStats.size();
         }
+        // Выгруженная история читается с диска уже без блокировки сегмента
+        for (Map.Entry<UUID, PlayerStatsData> entry : result.entrySet()) {
+            if (entry.getValue().history == null) {
+                entry.getValue().history = loadHistory(entry.getKey());
+            }
+        }
+        return result;
     }
     
-    private void cleanupOldBackups() {
+    // Вызывается под блокировкой сегмента
+    private void applyAppearance(Shard shard, UUID uuid, String username, AppearanceData appearance, long sequence) {
+        PlayerStatsData stats = shard.players.get(uuid);
+        if (stats == null) {
+            stats = new PlayerStatsData(username, appearance.timestamp);
+            shard.players.put(uuid, stats);
+            uniquePlayers.increment();
+        } else if (stats.history == null) {
+            // Обычно история уже загружена в hydrateHistory, а у игроков с открытой сессией
+            // не выгружается; сюда попадают проигрывание журнала и редкая гонка с выгрузкой
+            stats.history = loadHistory(uuid);
+        }
+        stats.recordAppearance(appearance);
+        // Старый хвост активного игрока сокращается сразу - проверяется только самая старая запись
+        stats.history.prune(fineCutoff(appearance.timestamp), hourlyCutoff(appearance.timestamp));
+        stats.retentionTier = stats.history.getTier();
+        stats.lastSequence = sequence;
+        shard.index(uuid, stats);
+        lastUpdated.accumulateAndGet(appearance.timestamp, Math::max);
+    }
+    
+    /**
+     * Загрузка: индекс последнего снимка (без истории игроков), затем проигрывание журнала.
+     * Возвращает true, если снимок прочитан из старого JSON и его нужно переписать
+     */
+    private boolean loadStats() {
+        long snapshotSequence = 0;
+        boolean migrated = false;
+        Path legacyPath = baseDirectory.resolve(LEGACY_STATS_FILE);
         try {
-            Path backupDir = Paths.get(BACKUP_DIR);
-            if (!Files.exists(backupDir)) return;
-            
-            List<Path> backupFiles = Files.list(backupDir)
-                .filter(path -> path.toString().endsWith(".json"))
-                .sorted(Comparator.comparingLong(path -> {
-                    try {
-                        return Files.getLastModifiedTime(path).toMillis();
-                    } catch (IOException e) {
-                        return 0L;
+            if (snapshot.exists()) {
+                // Счётчик выводится из загруженного индекса, а не из заголовка
+                StatsSnapshot.Header header = snapshot.load((uuid, data) -> {
+                    Shard shard = shardOf(uuid);
+                    if (shard.players.put(uuid, data) == null) {
+                        uniquePlayers.increment();
                     }
-                }))
-                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-            
-            // Оставляем только последние 10 бэкапов
-            if (backupFiles.size() > 10) {
-                for (int i = 0; i < backupFiles.size() - 10; i++) {
-                    Files.deleteIfExists(backupFiles.get(i));
-                }
+                    shard.index(uuid, data);
+                });
+                this.serverName = header.serverName;
+                this.lastUpdated.set(header.lastUpdated);
+                snapshotSequence = header.journalSequence;
+            } else if (Files.exists(legacyPath)) {
+                snapshotSequence = loadLegacyStats(legacyPath);
+                migrated = true;
             }
+        } catch (IOException | RuntimeException e) {
+            PlayerTrackerMod.LOGGER.error("Ошибка загрузки статистики", e);
+        }
+        
+        long replayFrom = snapshotSequence;
+        journalSequence.set(snapshotSequence);
+        try {
+            // Загрузка идёт в конструкторе, до появления других потоков
+            journal.replay(record -> {
+                Shard shard = shardOf(record.uuid);
+                // Записи до снимка могли остаться, если сбой произошёл до удаления сегментов;
+                // сегменты снимаются в разное время, поэтому учитывается и номер у самого игрока
+                PlayerStatsData existing = shard.players.get(record.uuid);
+                if (record.sequence <= replayFrom
+                    || (existing != null && record.sequence <= existing.lastSequence)) {
+                    return;
+                }
+                applyAppearance(shard, record.uuid, record.username, record.appearance, record.sequence);
+                journalSequence.accumulateAndGet(record.sequence, Math::max);
+            });
         } catch (IOException e) {
-            PlayerTrackerMod.LOGGER.error("Ошибка очистки старых бэкапов", e);
+            PlayerTrackerMod.LOGGER.error("Ошибка чтения журнала статистики", e);
         }
+        return migrated;
     }
     
-    // Внутренние классы для JSON сериализации
-    public static class StatsContainer {
-        public ServerInfo serverInfo;
-        public Map<UUID, PlayerStatsData> players;
+    /**
+     * Потоковое чтение снимка в JSON: игроки разбираются по одному, без дерева всего файла
+     */
+    private long loadLegacyStats(Path legacyPath) throws IOException {
+        long sequence = 0;
+        List<String> biomes = null;
+        Map<UUID, PlayerStatsData> loaded = new HashMap<>();
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(legacyPath))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "serverInfo":
+                        ServerInfo info = GSON.fromJson(reader, ServerInfo.class);
+                        this.serverName = info.serverName;
+                        this.lastUpdated.set(info.lastUpdated);
+                        break;
+                    case "journalSequence":
+                        sequence = reader.nextLong();
+                        break;
+                    case "biomes":
+                        biomes = GSON.fromJson(reader, new TypeToken<List<String>>() {}.getType());
+                        break;
+                    case "players":
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            UUID uuid = UUID.fromString(reader.nextName());
+                            loaded.put(uuid, GSON.fromJson(reader, PlayerStatsData.class));
+                        }
+                        reader.endObject();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        
+        // Словарь может идти после игроков, поэтому id переводятся в конце
+        int[] biomeRemap = biomes != null ? BiomeDictionary.remapTable(biomes) : null;
+        for (Map.Entry<UUID, PlayerStatsData> entry : loaded.entrySet()) {
+            entry.getValue().afterLoad(biomeRemap);
+            entry.getValue().retentionTier = entry.getValue().history.getTier();
+            Shard shard = shardOf(entry.getKey());
+            if (shard.players.put(entry.getKey(), entry.getValue()) == null) {
+                uniquePlayers.increment();
+            }
+            shard.index(entry.getKey(), entry.getValue());
+        }
+        return sequence;
+    }
+    
+    @FunctionalInterface
+    private interface IOAction {
+        void run() throws IOException;
+    }
+    
+    private static class Shard {
+        final Map<UUID, PlayerStatsData> players = new HashMap<>();
+        final List<StatsJournal.Record> pending = new ArrayList<>();
+        // Открытые сессии игроков сегмента - под той же блокировкой, что и их статистика
+        final SessionTracker sessions = new SessionTracker();
+        // Игроки с точными или минутными записями и игроки только с часовыми сводками
+        final LastSeenIndex full = new LastSeenIndex();
+        final LastSeenIndex hourly = new LastSeenIndex();
+        
+        void index(UUID uuid, PlayerStatsData data) {
+            if (data.retentionTier == AppearanceHistory.TIER_FULL) {
+                full.update(uuid, data.lastSeen);
+                hourly.remove(uuid);
+            } else if (data.retentionTier == AppearanceHistory.TIER_HOURLY) {
+                hourly.update(uuid, data.lastSeen);
+                full.remove(uuid);
+            } else {
+                unindex(uuid);
+            }
+        }
+        
+        void unindex(UUID uuid) {
+            full.remove(uuid);
+            hourly.remove(uuid);
+        }
+        
+        void clear() {
+            // Открытые сессии относятся к очищаемым данным
+            sessions.clear();
+            players.clear();
+            full.clear();
+            hourly.clear();
+        }
     }
     
+    // Внутренние классы для JSON сериализации
     public static class ServerInfo {
         public String serverName;
         public long lastUpdated;
@@ -293,39 +974,93 @@ public class PlayerStats {
         public long lastSeen;
         public int totalSessions;
         public long totalOnlineTime;
+        // null - история выгружена и лежит в снимке (см. StatsSnapshot)
+        public AppearanceHistory history;
+        // Номер последнего изменения (запись журнала или очистка) - отсекает повторное проигрывание
+        public long lastSequence;
+        // Уровень удержания истории (AppearanceHistory.TIER_*); хранится в индексе снимка
+        public transient int retentionTier;
+        // Старый формат (список всех появлений) - переносится в history при загрузке
         public List<AppearanceData> appearances;
         
         public PlayerStatsData(String username) {
+            this(username, System.currentTimeMillis());
+        }
+        
+        public PlayerStatsData(String username, long firstSeen) {
             this.username = username;
-            this.firstSeen = System.currentTimeMillis();
-            this.lastSeen = System.currentTimeMillis();
+            this.firstSeen = firstSeen;
+            this.lastSeen = firstSeen;
             this.totalSessions = 0;
             this.totalOnlineTime = 0;
-            this.appearances = new ArrayList<>();
+            this.history = new AppearanceHistory();
+        }
+        
+        // Глубокая копия; history копии - null, если история выгружена
+        public PlayerStatsData copy() {
+            PlayerStatsData copy = copySummary();
+            copy.history = history != null ? history.copy() : null;
+            return copy;
+        }
+        
+        // Копия без истории
+        PlayerStatsData copySummary() {
+            PlayerStatsData copy = new PlayerStatsData(username, firstSeen);
+            copy.lastSeen = lastSeen;
+            copy.totalSessions = totalSessions;
+            copy.totalOnlineTime = totalOnlineTime;
+            copy.lastSequence = lastSequence;
+            copy.retentionTier = retentionTier;
+            copy.history = null;
+            return copy;
         }
         
-        public void recordAppearance(BlockPos position, Biome biome, long sessionDuration) {
-            this.lastSeen = System.currentTimeMillis();
-            this.totalSessions++;
-            this.totalOnlineTime += sessionDuration;
+        public void recordAppearance(AppearanceData appearance) {
+            this.lastSeen = appearance.timestamp;
+            if (appearance.sessionStart) {
+                this.totalSessions++;
+            }
+            this.totalOnlineTime += appearance.sessionDuration;
+            this.history.record(appearance.x, appearance.y, appearance.z,
+                appearance.biomeId, appearance.timestamp);
+        }
+        
+        void afterLoad(int[] biomeRemap) {
+            if (history == null) {
+                history = new AppearanceHistory();
+            } else if (biomeRemap != null) {
+                history.remapBiomes(biomeRemap);
+            }
             
-            AppearanceData appearance = new AppearanceData(position, biome, sessionDuration);
-            this.appearances.add(appearance);
+            if (appearances != null) {
+                for (AppearanceData appearance : appearances) {
+                    int biomeId = appearance.biome != null
+                        ? BiomeDictionary.idOf(appearance.biome) : appearance.biomeId;
+                    history.record(appearance.x, appearance.y, appearance.z, biomeId, appearance.timestamp);
+                }
+                appearances = null;
+            }
         }
     }
     
     public static class AppearanceData {
         public int x, y, z;
-        public String biome;
+        // id из BiomeDictionary
+        public int biomeId;
+        // Имя биома в самом старом JSON (до словаря биомов); переводится в id при загрузке
+        public transient String biome;
         public long timestamp;
+        // Время онлайн с предыдущей точки маршрута той же сессии, мс
         public long sessionDuration;
+        // Первая точка сессии
+        public boolean sessionStart;
         
-        public AppearanceData(BlockPos position, Biome biome, long sessionDuration) {
-            this.x = position.getX();
-            this.y = position.getY();
-            this.z = position.getZ();
-            this.biome = biome.toString();
-            this.timestamp = System.currentTimeMillis();
+        public AppearanceData(int x, int y, int z, int biomeId, long timestamp, long sessionDuration) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.biomeId = biomeId;
+            this.timestamp = timestamp;
             this.sessionDuration = sessionDuration;
         }
     }
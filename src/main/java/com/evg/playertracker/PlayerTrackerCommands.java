@@ -0,0 +1,119 @@
+package com.evg.playertracker;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * PlayerTrackerCommands - клиентские команды /playertracker
+ */
+public class PlayerTrackerCommands {
+    private static final DateTimeFormatter SEEN_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")
+        .withZone(ZoneId.systemDefault());
+    private static final int MAX_LISTED_PLAYERS = 10;
+    private static final int MAX_RADIUS = 100_000;
+    // Граница мира Minecraft по x/z
+    private static final int WORLD_LIMIT = 30_000_000;
+    private static final int DEFAULT_HOURS = 24;
+
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal("playertracker")
+            .then(Commands.literal("stats")
+                .then(Commands.literal("near")
+                    .then(Commands.argument("x", IntegerArgumentType.integer(-WORLD_LIMIT, WORLD_LIMIT))
+                        .then(Commands.argument("z", IntegerArgumentType.integer(-WORLD_LIMIT, WORLD_LIMIT))
+                            .then(Commands.argument("radius", IntegerArgumentType.integer(1, MAX_RADIUS))
+                                .executes(context -> near(context, DEFAULT_HOURS))
+                                .then(Commands.argument("hours", IntegerArgumentType.integer(1))
+                                    .executes(context -> near(context, IntegerArgumentType.getInteger(context, "hours"))))))))));
+    }
+
+    /**
+     * Кто был в радиусе от точки за последние hours часов - по геоиндексу архива появлений
+     */
+    private static int near(CommandContext<CommandSourceStack> context, int hours) {
+        CommandSourceStack source = context.getSource();
+        PlayerStats stats = PlayerTrackerMod.getInstance().getPlayerStats();
+        if (stats == null) {
+            source.sendFailure(Component.literal("Статистика не инициализирована"));
+            return 0;
+        }
+        int x = IntegerArgumentType.getInteger(context, "x");
+        int z = IntegerArgumentType.getInteger(context, "z");
+        int radius = IntegerArgumentType.getInteger(context, "radius");
+        long now = System.currentTimeMillis();
+
+        Map<UUID, Visit> visits = new HashMap<>();
+        int scanned;
+        long start = System.nanoTime();
+        try {
+            AppearanceArchive.Query query = new AppearanceArchive.Query()
+                .time(now - hours * 3_600_000L, now)
+                .near(x, z, radius);
+            scanned = stats.queryAppearances(query, (uuid, timestamp, px, py, pz, biomeId) ->
+                visits.computeIfAbsent(uuid, key -> new Visit()).add(timestamp, px, py, pz));
+        } catch (IOException e) {
+            PlayerTrackerMod.LOGGER.error("Ошибка запроса к архиву появлений", e);
+            source.sendFailure(Component.literal("Ошибка чтения архива появлений: " + e.getMessage()));
+            return 0;
+        }
+        double elapsedMillis = (System.nanoTime() - start) / 1_000_000.0;
+
+        long appearances = 0;
+        for (Visit visit : visits.values()) {
+            appearances += visit.count;
+        }
+        String summary = String.format("Игроков в радиусе %d от (%d, %d) за %d ч: %d, появлений: %d (сегментов архива: %d, %.2f мс)",
+            radius, x, z, hours, visits.size(), appearances, scanned, elapsedMillis);
+        source.sendSuccess(() -> Component.literal(summary), false);
+
+        List<Map.Entry<UUID, Visit>> sorted = new ArrayList<>(visits.entrySet());
+        sorted.sort((a, b) -> Long.compare(b.getValue().lastSeen, a.getValue().lastSeen));
+        for (Map.Entry<UUID, Visit> entry : sorted.subList(0, Math.min(MAX_LISTED_PLAYERS, sorted.size()))) {
+            String name = stats.getUsername(entry.getKey());
+            Visit visit = entry.getValue();
+            String line = String.format("  %s - %d появл., последнее %s в (%d, %d, %d)",
+                name != null ? name : entry.getKey(), visit.count,
+                SEEN_TIME.format(Instant.ofEpochMilli(visit.lastSeen)), visit.x, visit.y, visit.z);
+            source.sendSuccess(() -> Component.literal(line), false);
+        }
+        if (sorted.size() > MAX_LISTED_PLAYERS) {
+            int hidden = sorted.size() - MAX_LISTED_PLAYERS;
+            source.sendSuccess(() -> Component.literal("  ... и ещё " + hidden), false);
+        }
+        if (!Config.ARCHIVE_APPEARANCES.get()) {
+            source.sendSuccess(() -> Component.literal("Архив появлений выключен (archiveAppearances) - новые появления в запрос не попадают"), false);
+        }
+        return visits.size();
+    }
+
+    // Появления одного игрока в выборке: число и последнее место
+    private static class Visit {
+        int count;
+        long lastSeen = Long.MIN_VALUE;
+        int x, y, z;
+
+        void add(long timestamp, int x, int y, int z) {
+            count++;
+            if (timestamp >= lastSeen) {
+                lastSeen = timestamp;
+                this.x = x;
+                this.y = y;
+                this.z = z;
+            }
+        }
+    }
+}
@@ -5,13 +5,10 @@ import net.minecraft.client.gui.Font;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.player.LocalPlayer;
 import net.minecraft.core.BlockPos;
-import net.minecraft.world.level.biome.Biome;
 import net.minecraft.world.phys.Vec3;
 import net.neoforged.api.distmarker.Dist;
 import net.neoforged.api.distmarker.OnlyIn;
 
-import java.util.List;
-
 @OnlyIn(Dist.CLIENT)
 public class PlayerTrackerHUD {
     private static final int HUD_WIDTH = 200;
@@ -40,39 +37,23 @@ public class PlayerTrackerHUD {
             return;
         }
         
-        // Автоматически обнаруживаем игроков при каждом рендере HUD
-        PlayerDetector.detectPlayers();
-        
-        PlayerCache cache = PlayerTrackerMod.getInstance().getPlayerCache();
-        if (cache == null) {
-            return;
-        }
-        
-        List<PlayerData> visiblePlayers = cache.getVisiblePlayers(
-            localPlayer.position(),
-            Config.MAX_DETECTION_DISTANCE.get(),
-            Config.SORT_MODE.get()
-        );
-        
-        if (visiblePlayers.isEmpty()) {
+        // Снимок уже отсортирован детектором - одно чтение volatile-ссылки
+        TrackerSnapshot snapshot = PlayerDetector.getSnapshot();
+        if (snapshot.isEmpty()) {
             return; // Не показываем HUD если нет игроков
         }
-        
-        // Ограничиваем количество отображаемых игроков
-        int maxPlayers = Math.min(visiblePlayers.size(), Config.MAX_PLAYERS_DISPLAY.get());
-        visiblePlayers = visiblePlayers.subList(0, maxPlayers);
-        
+
         // Рендерим HUD (упрощенная версия)
-        renderSimpleHUD(minecraft, visiblePlayers);
+        renderSimpleHUD(minecraft, snapshot, Math.min(snapshot.size(), Config.MAX_PLAYERS_DISPLAY.get()));
     }
     
-    private static void renderSimpleHUD(Minecraft minecraft, List<PlayerData> players) {
+    private static void renderSimpleHUD(Minecraft minecraft, TrackerSnapshot snapshot, int count) {
         // Простая реализация HUD через логирование
-        if (minecraft.player != null && players.size() > 0) {
-            PlayerTrackerMod.LOGGER.info("HUD: Обнаружено {} игроков", players.size());
-            for (PlayerData player : players) {
-                PlayerTrackerMod.LOGGER.info("Игрок: {} на расстоянии {:.1f} блоков", 
-                    player.getUsername(), player.getDistance());
+        if (minecraft.player != null && count > 0) {
+            PlayerTrackerMod.LOGGER.info("HUD: Обнаружено {} игроков", count);
+            for (int i = 0; i < count; i++) {
+                PlayerTrackerMod.LOGGER.info("Игрок: {} на расстоянии {} блоков {}",
+                    snapshot.get(i).getUsername(), String.format("%.1f", snapshot.getDistance(i)), snapshot.getDirection(i));
             }
         }
     }
@@ -97,43 +78,16 @@ public class PlayerTrackerHUD {
             return true;
         }
         
-        Vec3 directionToTarget = targetPos.subtract(playerPos).normalize();
-        double angle = Math.acos(playerLookDir.dot(directionToTarget)) * 180 / Math.PI;
-        
-        return angle <= Math.toRadians(Config.FOV_ANGLE.get()) / 2.0;
+        double dx = targetPos.x - playerPos.x;
+        double dy = targetPos.y - playerPos.y;
+        double dz = targetPos.z - playerPos.z;
+        double cosHalf = Math.cos(Math.toRadians(Config.FOV_ANGLE.get()) / 2.0);
+        return FovCuller.inCone(dx, dy, dz, dx * dx + dy * dy + dz * dz,
+            playerLookDir.x, playerLookDir.y, playerLookDir.z, cosHalf);
     }
     
     // Метод для фильтрации NPC
     public static boolean isValidPlayer(String username) {
-        if (!Config.FILTER_NPCS.get()) {
-            return true;
-        }
-        
-        // Простые правила для фильтрации NPC
-        if (username == null || username.isEmpty()) {
-            return false;
-        }
-        
-        // Фильтруем слишком короткие имена
-        if (username.length() < 3) {
-            return false;
-        }
-        
-        // Фильтруем имена с необычными символами
-        if (username.matches(".*[^a-zA-Z0-9_].*")) {
-            return false;
-        }
-        
-        // Фильтруем имена, которые выглядят как боты
-        String lowerUsername = username.toLowerCase();
-        if (lowerUsername.contains("bot") || 
-            lowerUsername.contains("npc") || 
-            lowerUsername.contains("admin") ||
-            lowerUsername.contains("mod") ||
-            lowerUsername.contains("helper")) {
-            return false;
-        }
-        
-        return true;
+        return PlayerFilter.isValid(username);
     }
 }
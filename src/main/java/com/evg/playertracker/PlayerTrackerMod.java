@@ -22,9 +22,11 @@ import net.neoforged.bus.api.SubscribeEvent;
 import net.neoforged.fml.common.Mod;
 import net.neoforged.fml.config.ModConfig;
 import net.neoforged.fml.ModContainer;
+import net.neoforged.fml.event.config.ModConfigEvent;
 import net.neoforged.fml.event.lifecycle.FMLCommonSetupEvent;
 import net.neoforged.neoforge.common.NeoForge;
 import net.neoforged.neoforge.event.BuildCreativeModeTabContentsEvent;
+import net.neoforged.neoforge.event.GameShuttingDownEvent;
 import net.neoforged.neoforge.event.server.ServerStartingEvent;
 import net.neoforged.neoforge.registries.DeferredBlock;
 import net.neoforged.neoforge.registries.DeferredHolder;
@@ -79,6 +81,7 @@ public class PlayerTrackerMod {
         
         // Register the commonSetup method for modloading
         modEventBus.addListener(this::commonSetup);
+        modEventBus.addListener(this::onConfigReload);
 
         // Register the Deferred Register to the mod event bus so blocks get registered
         BLOCKS.register(modEventBus);
@@ -113,40 +116,16 @@ public class PlayerTrackerMod {
         LOGGER.info("HUD enabled: {}", Config.HUD_ENABLED.get());
         LOGGER.info("Max detection distance: {} blocks", Config.MAX_DETECTION_DISTANCE.get());
         LOGGER.info("Update interval: {} ticks", Config.UPDATE_INTERVAL.get());
-        
-        // Запускаем автоматическое обновление HUD
-        startHUDUpdate();
-    }
-    
-    private void startHUDUpdate() {
-        // Создаем отдельный поток для обновления HUD
-        Thread hudThread = new Thread(() -> {
-            while (true) {
-                try {
-                    Thread.sleep(2000); // Обновляем каждые 2 секунды
-                    
-                    // Проверяем, включен ли HUD
-                    if (Config.HUD_ENABLED.get() && Config.MOD_ENABLED.get()) {
-                        // Вызываем HUD
-                        PlayerTrackerHUD.renderHUD();
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-        });
-        hudThread.setDaemon(true);
-        hudThread.setName("PlayerTracker-HUD");
-        hudThread.start();
-        
-        LOGGER.info("HUD update thread started");
+
+        // Обнаружение, кэш, статистика и HUD выполняются TrackerScheduler по клиентским тикам
     }
     
     private void initializeComponents() {
         // Initialize player cache
+        // Ёмкость кэша задаётся своим бюджетом; MAX_PLAYERS_DISPLAY ограничивает только вывод
         this.playerCache = new PlayerCache(
-            Config.MAX_PLAYERS_DISPLAY.get(),
+            Config.CACHE_MAX_ENTRIES.get(),
+            Config.CACHE_MEMORY_BUDGET.get() * 1024L,
             Config.CACHE_LIFETIME.get()
         );
         
@@ -156,6 +135,18 @@ public class PlayerTrackerMod {
         LOGGER.info("Core components initialized");
     }
 
+    private void onConfigReload(ModConfigEvent.Reloading event) {
+        if (event.getConfig().getSpec() != Config.SPEC || playerCache == null) {
+            return;
+        }
+        // Кэш не пересоздаётся - меняются только его границы
+        playerCache.resize(
+            Config.CACHE_MAX_ENTRIES.get(),
+            Config.CACHE_MEMORY_BUDGET.get() * 1024L,
+            Config.CACHE_LIFETIME.get()
+        );
+    }
+
     // Add the example block item to the building blocks tab
     private void addCreative(BuildCreativeModeTabContentsEvent event) {
         if (event.getTabKey() == CreativeModeTabs.BUILDING_BLOCKS) {
@@ -170,6 +161,14 @@ public class PlayerTrackerMod {
         LOGGER.info("Player Tracker Mod ready on server: {}", event.getServer().getMotd());
     }
     
+    @SubscribeEvent
+    public void onGameShuttingDown(GameShuttingDownEvent event) {
+        // Сбрасываем несохранённую статистику и останавливаем поток сохранения
+        if (playerStats != null) {
+            playerStats.shutdown();
+        }
+    }
+    
     // Getters for core components
     public PlayerCache getPlayerCache() {
         return playerCache;
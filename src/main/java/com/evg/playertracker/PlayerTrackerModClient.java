@@ -1,14 +1,19 @@
 package com.evg.playertracker;
 
 import net.minecraft.client.Minecraft;
+import net.minecraft.world.level.chunk.ChunkAccess;
 import net.neoforged.api.distmarker.Dist;
 import net.neoforged.bus.api.SubscribeEvent;
 import net.neoforged.fml.ModContainer;
 import net.neoforged.fml.common.EventBusSubscriber;
 import net.neoforged.fml.common.Mod;
 import net.neoforged.fml.event.lifecycle.FMLClientSetupEvent;
+import net.neoforged.neoforge.client.event.ClientTickEvent;
+import net.neoforged.neoforge.client.event.RegisterClientCommandsEvent;
 import net.neoforged.neoforge.client.gui.ConfigurationScreen;
 import net.neoforged.neoforge.client.gui.IConfigScreenFactory;
+import net.neoforged.neoforge.event.level.ChunkEvent;
+import net.neoforged.neoforge.event.level.LevelEvent;
 
 // This class will not load on dedicated servers. Accessing client side code from here is safe.
 @Mod(value = PlayerTrackerMod.MODID, dist = Dist.CLIENT)
@@ -34,11 +39,39 @@ public class PlayerTrackerModClient {
         initializeClientComponents();
     }
     
+    @SubscribeEvent
+    static void onClientTick(ClientTickEvent.Post event) {
+        // Единственная точка входа для обнаружения, кэша, статистики и HUD
+        TrackerScheduler.onClientTick();
+    }
+    
+    @SubscribeEvent
+    static void onRegisterClientCommands(RegisterClientCommandsEvent event) {
+        PlayerTrackerCommands.register(event.getDispatcher());
+    }
+    
+    @SubscribeEvent
+    static void onChunkUnload(ChunkEvent.Unload event) {
+        // Биомы выгруженного чанка больше не запрашиваются - освобождаем их секции
+        if (!event.getLevel().isClientSide()) {
+            return;
+        }
+        ChunkAccess chunk = event.getChunk();
+        BiomeCache.invalidateChunk(event.getLevel(), chunk.getPos().x, chunk.getPos().z,
+            chunk.getMinSectionY(), chunk.getSectionsCount());
+    }
+    
+    @SubscribeEvent
+    static void onLevelUnload(LevelEvent.Unload event) {
+        // При выходе из мира или смене измерения кэш не должен удерживать старый мир
+        BiomeCache.invalidateLevel(event.getLevel());
+    }
+    
     private static void initializeClientComponents() {
         PlayerTrackerMod.LOGGER.info("Client components initialized");
         PlayerTrackerMod.LOGGER.info("Мод работает полностью на клиенте");
         PlayerTrackerMod.LOGGER.info("Обнаружение игроков происходит автоматически");
         PlayerTrackerMod.LOGGER.info("Используйте HUD для просмотра информации");
-        PlayerTrackerMod.LOGGER.info("Для тестирования HUD вызовите PlayerTrackerHUD.renderHUD()");
+        PlayerTrackerMod.LOGGER.info("Стадии обнаружения выполняются по клиентским тикам");
     }
 }
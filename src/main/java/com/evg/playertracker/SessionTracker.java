@@ -0,0 +1,150 @@
+package com.evg.playertracker;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * SessionTracker - восстановление сессий игроков по наблюдениям.
+ * Сессия открывается первым наблюдением и продлевается следующими; если игрока не видели
+ * дольше заданного промежутка, сессия закрывается на последнем наблюдении. В статистику
+ * попадают только точки маршрута: начало, точки не чаще WAYPOINT_INTERVAL_MS (или после
+ * смещения на WAYPOINT_DISTANCE блоков) и конец. Каждая точка несёт время онлайн с прошлой
+ * точки, поэтому сумма по сессии - время от первого до последнего наблюдения.
+ * Не потокобезопасен - доступ под блокировкой сегмента PlayerStats
+ */
+public class SessionTracker {
+    private static final long WAYPOINT_INTERVAL_MS = 60 * 1000L;
+    private static final int WAYPOINT_DISTANCE = 16;
+
+    @FunctionalInterface
+    public interface WaypointSink {
+        void accept(UUID uuid, String username, PlayerStats.AppearanceData waypoint);
+    }
+
+    private final Map<UUID, Session> open = new HashMap<>();
+
+    /**
+     * Учитывает наблюдение игрока; точки маршрута (в том числе конец просроченной
+     * сессии этого игрока) передаются в sink
+     */
+    public void sighting(UUID uuid, String username, int x, int y, int z, int biomeId,
+                         long now, long gapMillis, WaypointSink sink) {
+        Session session = open.get(uuid);
+        if (session != null && now - session.lastSighting > gapMillis) {
+            open.remove(uuid);
+            close(uuid, session, sink);
+            session = null;
+        }
+
+        if (session == null) {
+            session = new Session(username, x, y, z, biomeId, now);
+            open.put(uuid, session);
+            sink.accept(uuid, username, waypoint(x, y, z, biomeId, now, 0, true));
+            return;
+        }
+
+        session.username = username;
+        session.sighted(x, y, z, biomeId, now);
+        if (now - session.waypointTime >= WAYPOINT_INTERVAL_MS || session.movedFromWaypoint()) {
+            sink.accept(uuid, username, waypoint(x, y, z, biomeId, now, now - session.waypointTime, false));
+            session.waypointTime = now;
+            session.markWaypoint();
+        }
+    }
+
+    /**
+     * Закрывает сессии игроков, не наблюдавшихся дольше gapMillis
+     */
+    public int closeIdle(long now, long gapMillis, WaypointSink sink) {
+        int closed = 0;
+        Iterator<Map.Entry<UUID, Session>> iterator = open.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<UUID, Session> entry = iterator.next();
+            if (now - entry.getValue().lastSighting > gapMillis) {
+                iterator.remove();
+                close(entry.getKey(), entry.getValue(), sink);
+                closed++;
+            }
+        }
+        return closed;
+    }
+
+    // При завершении работы: открытые сессии заканчиваются на последнем наблюдении
+    public void closeAll(WaypointSink sink) {
+        for (Map.Entry<UUID, Session> entry : open.entrySet()) {
+            close(entry.getKey(), entry.getValue(), sink);
+        }
+        open.clear();
+    }
+
+    // Без точки конца: статистика игрока сброшена, продолжать сессию некуда
+    public void forget(UUID uuid) {
+        open.remove(uuid);
+    }
+
+    public void clear() {
+        open.clear();
+    }
+
+    public boolean isOpen(UUID uuid) {
+        return open.containsKey(uuid);
+    }
+
+    public int getOpenCount() {
+        return open.size();
+    }
+
+    private static void close(UUID uuid, Session session, WaypointSink sink) {
+        if (session.lastSighting > session.waypointTime) {
+            sink.accept(uuid, session.username, waypoint(session.x, session.y, session.z, session.biomeId,
+                session.lastSighting, session.lastSighting - session.waypointTime, false));
+        }
+    }
+
+    private static PlayerStats.AppearanceData waypoint(int x, int y, int z, int biomeId, long timestamp,
+                                                       long onlineMillis, boolean sessionStart) {
+        PlayerStats.AppearanceData appearance = new PlayerStats.AppearanceData(x, y, z, biomeId, timestamp, onlineMillis);
+        appearance.sessionStart = sessionStart;
+        return appearance;
+    }
+
+    private static class Session {
+        String username;
+        // Последнее наблюдение
+        int x, y, z, biomeId;
+        long lastSighting;
+        // Последняя записанная точка маршрута
+        int waypointX, waypointY, waypointZ;
+        long waypointTime;
+
+        Session(String username, int x, int y, int z, int biomeId, long now) {
+            this.username = username;
+            sighted(x, y, z, biomeId, now);
+            this.waypointTime = now;
+            markWaypoint();
+        }
+
+        void sighted(int x, int y, int z, int biomeId, long now) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.biomeId = biomeId;
+            this.lastSighting = now;
+        }
+
+        void markWaypoint() {
+            waypointX = x;
+            waypointY = y;
+            waypointZ = z;
+        }
+
+        boolean movedFromWaypoint() {
+            long dx = x - waypointX;
+            long dy = y - waypointY;
+            long dz = z - waypointZ;
+            return dx * dx + dy * dy + dz * dz >= (long) WAYPOINT_DISTANCE * WAYPOINT_DISTANCE;
+        }
+    }
+}
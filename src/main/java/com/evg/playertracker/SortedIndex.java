@@ -0,0 +1,86 @@
+package com.evg.playertracker;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * SortedIndex - упорядоченный индекс игроков по ключу сортировки (ник, команда, биом).
+ * Обновляется точечно при вставке и удалении; если ключ игрока не изменился,
+ * индекс не трогается. Страница читается обходом по порядку, без сортировки
+ */
+public class SortedIndex implements Iterable<UUID> {
+    private final Function<PlayerData, String> keyExtractor;
+    private final TreeSet<Key> order = new TreeSet<>();
+    private final Map<UUID, Key> keys = new HashMap<>();
+
+    public SortedIndex(Function<PlayerData, String> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+    }
+
+    public void update(PlayerData player) {
+        String sortKey = keyExtractor.apply(player);
+        Key current = keys.get(player.getUuid());
+        if (current != null) {
+            if (current.sortKey.equals(sortKey)) {
+                return;
+            }
+            order.remove(current);
+        }
+        Key key = new Key(sortKey, player.getUuid());
+        order.add(key);
+        keys.put(player.getUuid(), key);
+    }
+
+    public void remove(UUID uuid) {
+        Key key = keys.remove(uuid);
+        if (key != null) {
+            order.remove(key);
+        }
+    }
+
+    public void clear() {
+        order.clear();
+        keys.clear();
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    @Override
+    public Iterator<UUID> iterator() {
+        Iterator<Key> iterator = order.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public UUID next() {
+                return iterator.next().uuid;
+            }
+        };
+    }
+
+    // Ключ сортировки; UUID различает игроков с одинаковым ключом
+    private static class Key implements Comparable<Key> {
+        final String sortKey;
+        final UUID uuid;
+
+        Key(String sortKey, UUID uuid) {
+            this.sortKey = sortKey;
+            this.uuid = uuid;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int result = sortKey.compareTo(other.sortKey);
+            return result != 0 ? result : uuid.compareTo(other.uuid);
+        }
+    }
+}
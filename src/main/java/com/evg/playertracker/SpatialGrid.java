@@ -0,0 +1,139 @@
+package com.evg.playertracker;
+
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * SpatialGrid - равномерная сетка по секциям чанков (16x16x16 блоков)
+ * Позволяет выбирать игроков в радиусе, просматривая только соседние ячейки
+ */
+public class SpatialGrid {
+    private final Map<Long, List<PlayerData>> cells = new HashMap<>();
+    private final Map<UUID, Long> cellByPlayer = new HashMap<>();
+
+    @FunctionalInterface
+    public interface RangeVisitor {
+        void visit(PlayerData player, double distanceSq);
+    }
+
+    public void put(PlayerData player) {
+        long key = cellKey(player.getPosition());
+        Long previousKey = cellByPlayer.put(player.getUuid(), key);
+        if (previousKey != null) {
+            removeFromCell(previousKey, player.getUuid());
+        }
+        cells.computeIfAbsent(key, k -> new ArrayList<>(4)).add(player);
+    }
+
+    public void remove(UUID uuid) {
+        Long key = cellByPlayer.remove(uuid);
+        if (key != null) {
+            removeFromCell(key, uuid);
+        }
+    }
+
+    public void clear() {
+        cells.clear();
+        cellByPlayer.clear();
+    }
+
+    public int size() {
+        return cellByPlayer.size();
+    }
+
+    public int getCellCount() {
+        return cells.size();
+    }
+
+    /**
+     * Обходит всех игроков в сфере радиуса radius вокруг center
+     */
+    public void forEachInRange(Vec3 center, double radius, RangeVisitor visitor) {
+        if (cells.isEmpty()) {
+            return;
+        }
+
+        int minX = SectionPos.blockToSectionCoord(center.x - radius);
+        int minY = SectionPos.blockToSectionCoord(center.y - radius);
+        int minZ = SectionPos.blockToSectionCoord(center.z - radius);
+        int maxX = SectionPos.blockToSectionCoord(center.x + radius);
+        int maxY = SectionPos.blockToSectionCoord(center.y + radius);
+        int maxZ = SectionPos.blockToSectionCoord(center.z + radius);
+        double radiusSq = radius * radius;
+
+        long cellsInRange = (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+        if (cellsInRange <= cells.size()) {
+            // Радиус мал относительно числа занятых ячеек - перебираем ячейки куба
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    for (int z = minZ; z <= maxZ; z++) {
+                        List<PlayerData> cell = cells.get(SectionPos.asLong(x, y, z));
+                        if (cell != null) {
+                            visitCell(cell, center, radiusSq, visitor);
+                        }
+                    }
+                }
+            }
+            return;
+        }
+
+        // Занятых ячеек меньше, чем ячеек в кубе - перебираем только занятые
+        for (Map.Entry<Long, List<PlayerData>> entry : cells.entrySet()) {
+            long key = entry.getKey();
+            int x = SectionPos.x(key);
+            int y = SectionPos.y(key);
+            int z = SectionPos.z(key);
+            if (x < minX || x > maxX || y < minY || y > maxY || z < minZ || z > maxZ) {
+                continue;
+            }
+            visitCell(entry.getValue(), center, radiusSq, visitor);
+        }
+    }
+
+    private static void visitCell(List<PlayerData> cell, Vec3 center, double radiusSq, RangeVisitor visitor) {
+        for (int i = 0; i < cell.size(); i++) {
+            PlayerData player = cell.get(i);
+            Vec3 pos = player.getPosition();
+            double dx = pos.x - center.x;
+            double dy = pos.y - center.y;
+            double dz = pos.z - center.z;
+            double distanceSq = dx * dx + dy * dy + dz * dz;
+            if (distanceSq <= radiusSq) {
+                visitor.visit(player, distanceSq);
+            }
+        }
+    }
+
+    private void removeFromCell(long key, UUID uuid) {
+        List<PlayerData> cell = cells.get(key);
+        if (cell == null) {
+            return;
+        }
+        for (int i = 0; i < cell.size(); i++) {
+            if (cell.get(i).getUuid().equals(uuid)) {
+                // Порядок внутри ячейки не важен - заменяем последним элементом
+                int last = cell.size() - 1;
+                cell.set(i, cell.get(last));
+                cell.remove(last);
+                break;
+            }
+        }
+        if (cell.isEmpty()) {
+            cells.remove(key);
+        }
+    }
+
+    private static long cellKey(Vec3 position) {
+        return SectionPos.asLong(
+            SectionPos.blockToSectionCoord(position.x),
+            SectionPos.blockToSectionCoord(position.y),
+            SectionPos.blockToSectionCoord(position.z)
+        );
+    }
+}
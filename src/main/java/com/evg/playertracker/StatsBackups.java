@@ -0,0 +1,206 @@
+package com.evg.playertracker;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * StatsBackups - инкрементальные бэкапы статистики.
+ * Снимок и запечатанные сегменты журнала после записи не изменяются (снимок заменяется
+ * переименованием, в сегменты не дописывают), поэтому в хранилище они попадают жёсткой
+ * ссылкой, а без поддержки ссылок - копией. Каждый файл хранится один раз: ключ составлен
+ * из имени, размера и времени изменения, повторный бэкап добавляет только новые сегменты.
+ * Состав бэкапа описывает манифест; файлы, на которые не ссылается ни один манифест,
+ * удаляются при ротации
+ */
+public class StatsBackups {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final String STORE_DIR = "store";
+    private static final String MANIFEST_PREFIX = "backup-";
+    private static final String MANIFEST_SUFFIX = ".json";
+    // Время в имени манифеста фиксированной ширины - сортировка по имени идёт по времени
+    private static final DateTimeFormatter NAME_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss-SSS");
+
+    private final Path directory;
+    private final Path store;
+    private final int maxBackups;
+
+    public StatsBackups(Path directory, int maxBackups) {
+        this.directory = directory;
+        this.store = directory.resolve(STORE_DIR);
+        this.maxBackups = maxBackups;
+    }
+
+    /**
+     * Создаёт бэкап из снимка (может отсутствовать) и запечатанных сегментов журнала.
+     * Возвращает имя бэкапа
+     */
+    public String create(Path snapshot, List<Path> segments) throws IOException {
+        Files.createDirectories(store);
+
+        Manifest manifest = new Manifest();
+        manifest.created = System.currentTimeMillis();
+        manifest.snapshot = Files.exists(snapshot) ? put(snapshot) : null;
+        manifest.segments = new ArrayList<>();
+        for (Path segment : segments) {
+            manifest.segments.add(put(segment));
+        }
+
+        String name = MANIFEST_PREFIX + LocalDateTime.now().format(NAME_TIME);
+        manifest.name = name;
+        Path tempPath = directory.resolve(name + MANIFEST_SUFFIX + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tempPath)) {
+            GSON.toJson(manifest, writer);
+        }
+        Files.move(tempPath, directory.resolve(name + MANIFEST_SUFFIX),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        rotate();
+        return name;
+    }
+
+    // Имена бэкапов от старых к новым
+    public List<String> list() throws IOException {
+        List<String> names = new ArrayList<>();
+        for (Path path : listManifests()) {
+            String fileName = path.getFileName().toString();
+            names.add(fileName.substring(0, fileName.length() - MANIFEST_SUFFIX.length()));
+        }
+        return names;
+    }
+
+    /**
+     * Читает манифест и проверяет, что все его файлы на месте и не изменились
+     */
+    public Manifest read(String name) throws IOException {
+        Path path = directory.resolve(name + MANIFEST_SUFFIX);
+        if (!name.startsWith(MANIFEST_PREFIX) || !Files.exists(path)) {
+            throw new IllegalArgumentException("Бэкап не найден: " + name);
+        }
+        Manifest manifest;
+        try (Reader reader = Files.newBufferedReader(path)) {
+            manifest = GSON.fromJson(reader, Manifest.class);
+        }
+        if (manifest.segments == null) {
+            manifest.segments = new ArrayList<>();
+        }
+        List<FileEntry> entries = new ArrayList<>(manifest.segments);
+        if (manifest.snapshot != null) {
+            entries.add(manifest.snapshot);
+        }
+        for (FileEntry entry : entries) {
+            Path file = fileOf(entry);
+            if (!Files.exists(file) || Files.size(file) != entry.size) {
+                throw new IOException("Файл бэкапа отсутствует или повреждён: " + file);
+            }
+        }
+        return manifest;
+    }
+
+    public Path fileOf(FileEntry entry) {
+        return store.resolve(entry.key);
+    }
+
+    /**
+     * Жёсткая ссылка, а если файловая система их не поддерживает - копия
+     */
+    public static void linkOrCopy(Path source, Path target) throws IOException {
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        try {
+            Files.createLink(target, source);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.copy(source, target);
+        }
+    }
+
+    private FileEntry put(Path file) throws IOException {
+        FileEntry entry = new FileEntry();
+        entry.fileName = file.getFileName().toString();
+        entry.size = Files.size(file);
+        entry.key = entry.fileName + "@" + entry.size + "-" + Files.getLastModifiedTime(file).toMillis();
+        Path target = store.resolve(entry.key);
+        if (!Files.exists(target)) {
+            linkOrCopy(file, target);
+        }
+        return entry;
+    }
+
+    // Оставляет последние maxBackups манифестов и удаляет файлы, на которые они не ссылаются
+    private void rotate() throws IOException {
+        List<Path> manifests = listManifests();
+        for (int i = 0; i < manifests.size() - maxBackups; i++) {
+            Files.deleteIfExists(manifests.get(i));
+        }
+
+        Set<String> referenced = new HashSet<>();
+        for (String name : list()) {
+            Manifest manifest;
+            try (Reader reader = Files.newBufferedReader(directory.resolve(name + MANIFEST_SUFFIX))) {
+                manifest = GSON.fromJson(reader, Manifest.class);
+            }
+            if (manifest.snapshot != null) {
+                referenced.add(manifest.snapshot.key);
+            }
+            if (manifest.segments != null) {
+                for (FileEntry entry : manifest.segments) {
+                    referenced.add(entry.key);
+                }
+            }
+        }
+
+        try (Stream<Path> files = Files.list(store)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!referenced.contains(file.getFileName().toString())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private List<Path> listManifests() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(path -> path.getFileName().toString().startsWith(MANIFEST_PREFIX)
+                    && path.getFileName().toString().endsWith(MANIFEST_SUFFIX))
+                .sorted()
+                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        }
+    }
+
+    public static class Manifest {
+        public String name;
+        public long created;
+        // null - на момент бэкапа снимка ещё не было
+        public FileEntry snapshot;
+        // Сегменты журнала поверх снимка, по порядку
+        public List<FileEntry> segments;
+    }
+
+    public static class FileEntry {
+        // Имя файла в хранилище
+        public String key;
+        // Исходное имя файла - под ним файл возвращается при восстановлении
+        public String fileName;
+        public long size;
+    }
+}
@@ -0,0 +1,335 @@
+package com.evg.playertracker;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * StatsExporter - потоковый экспорт статистики в JSON и CSV.
+ * Игроки обрабатываются пачками: пачка форматируется в текст на пуле fork-join,
+ * готовые пачки пишутся в файл строго по порядку через буфер FileChannel.
+ * В работе одновременно не больше нескольких пачек, поэтому расход памяти
+ * не зависит от числа игроков и объёма их истории
+ */
+public class StatsExporter {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    // DateTimeFormatter неизменяем и потокобезопасен - создаётся один раз
+    private static final DateTimeFormatter ROW_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+        .withZone(ZoneId.systemDefault());
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+    private static final int PLAYERS_PER_CHUNK = 256;
+    private static final int WRITE_BUFFER_BYTES = 256 * 1024;
+
+    public enum Format {
+        JSON("json", "json"),
+        // Одна строка на игрока
+        CSV("csv", "csv"),
+        // Одна строка на появление (точные выборки и свёрнутые корзины истории)
+        CSV_LONG("csv-long", "csv");
+
+        private final String id;
+        private final String extension;
+
+        Format(String id, String extension) {
+            this.id = id;
+            this.extension = extension;
+        }
+
+        public static Format parse(String value) {
+            String normalized = value.toLowerCase(Locale.ROOT).replace('_', '-');
+            for (Format format : values()) {
+                if (format.id.equals(normalized)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Неподдерживаемый формат: " + value);
+        }
+    }
+
+    private final PlayerStats stats;
+    private final ForkJoinPool pool;
+
+    public StatsExporter(PlayerStats stats) {
+        this(stats, ForkJoinPool.commonPool());
+    }
+
+    public StatsExporter(PlayerStats stats, ForkJoinPool pool) {
+        this.stats = stats;
+        this.pool = pool;
+    }
+
+    public Result export(Format format, Path directory) throws IOException {
+        String suffix = format == Format.CSV_LONG ? "long_" : "";
+        Path path = directory.resolve(String.format("player_stats_export_%s%s.%s",
+            suffix, LocalDateTime.now().format(FILE_TIME), format.extension));
+
+        long start = System.nanoTime();
+        List<UUID> players = stats.getPlayerIds();
+        long rows = 0;
+        long exported = 0;
+        long bytes;
+
+        try (ChannelOutput out = new ChannelOutput(path)) {
+            out.write(header(format));
+
+            // Окно пачек в работе: пока пишется старшая, следующие уже форматируются
+            int window = Math.max(2, pool.getParallelism() * 2);
+            ArrayDeque<CompletableFuture<Chunk>> inFlight = new ArrayDeque<>();
+            int next = 0;
+            boolean first = true;
+            while (next < players.size() || !inFlight.isEmpty()) {
+                while (next < players.size() && inFlight.size() < window) {
+                    List<UUID> slice = players.subList(next, Math.min(players.size(), next + PLAYERS_PER_CHUNK));
+                    inFlight.add(CompletableFuture.supplyAsync(() -> formatChunk(format, slice), pool));
+                    next += slice.size();
+                }
+
+                Chunk chunk = await(inFlight.poll());
+                if (chunk.players == 0) {
+                    continue;
+                }
+                // Разделитель между пачками JSON ставится здесь, внутри пачки - при форматировании
+                if (format == Format.JSON && !first) {
+                    out.write(",\n".getBytes(StandardCharsets.UTF_8));
+                }
+                first = false;
+                out.write(chunk.text.getBytes(StandardCharsets.UTF_8));
+                rows += chunk.rows;
+                exported += chunk.players;
+            }
+
+            out.write(footer(format));
+            bytes = out.getWritten();
+        }
+
+        Result result = new Result(path, exported, rows, bytes, (System.nanoTime() - start) / 1_000_000);
+        PlayerTrackerMod.LOGGER.info("Экспорт статистики {}: {} игроков, {} строк за {} мс ({} строк/с)",
+            path.getFileName(), result.players, result.rows, result.elapsedMillis, result.getRowsPerSecond());
+        return result;
+    }
+
+    private byte[] header(Format format) {
+        String text;
+        switch (format) {
+            case JSON:
+                PlayerStats.ServerInfo info = new PlayerStats.ServerInfo(stats.getServerName(),
+                    stats.getLastUpdated(), stats.getTotalUniquePlayers());
+                text = "{\n  \"serverInfo\": " + indent(GSON.toJson(info)) + ",\n  \"players\": {\n";
+                break;
+            case CSV:
+                text = "UUID,Username,First Seen,Last Seen,Total Sessions,Total Online Time,Appearances Count\n";
+                break;
+            default:
+                text = "UUID,Username,Timestamp,X,Y,Z,Biome,Samples\n";
+        }
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] footer(Format format) {
+        return (format == Format.JSON ? "\n  }\n}\n" : "").getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Выполняется на пуле; игроки, удалённые после получения списка, пропускаются
+    private Chunk formatChunk(Format format, List<UUID> slice) {
+        StringBuilder text = new StringBuilder(slice.size() * (format == Format.CSV ? 128 : 1024));
+        int players = 0;
+        long rows = 0;
+        for (UUID uuid : slice) {
+            PlayerStats.PlayerStatsData data = stats.getPlayerStats(uuid);
+            if (data == null) {
+                continue;
+            }
+            switch (format) {
+                case JSON:
+                    if (players > 0) {
+                        text.append(",\n");
+                    }
+                    rows += appendJson(text, uuid, data);
+                    break;
+                case CSV:
+                    text.append(uuid).append(',').append(data.username).append(',');
+                    ROW_TIME.formatTo(Instant.ofEpochMilli(data.firstSeen), text);
+                    text.append(',');
+                    ROW_TIME.formatTo(Instant.ofEpochMilli(data.lastSeen), text);
+                    text.append(',').append(data.totalSessions)
+                        .append(',').append(data.totalOnlineTime)
+                        .append(',').append(data.history.getTotalSamples())
+                        .append('\n');
+                    rows++;
+                    break;
+                default:
+                    String prefix = uuid + "," + data.username + ",";
+                    long[] count = new long[1];
+                    data.history.forEach((x, y, z, biomeId, timestamp, samples) -> {
+                        text.append(prefix);
+                        ROW_TIME.formatTo(Instant.ofEpochMilli(timestamp), text);
+                        text.append(',').append(x).append(',').append(y).append(',').append(z)
+                            .append(',').append(BiomeDictionary.nameOf(biomeId))
+                            .append(',').append(samples)
+                            .append('\n');
+                        count[0]++;
+                    });
+                    rows += count[0];
+            }
+            players++;
+        }
+        return new Chunk(text.toString(), players, rows);
+    }
+
+    /**
+     * Игрок в JSON: сводка и появления в абсолютном времени с именами биомов -
+     * внутреннее устройство истории в экспорт не попадает. Возвращает число появлений
+     */
+    private static long appendJson(StringBuilder text, UUID uuid, PlayerStats.PlayerStatsData data) {
+        text.append("    \"").append(uuid).append("\": {\n");
+        text.append("      \"username\": ");
+        appendString(text, data.username);
+        text.append(",\n      \"firstSeen\": ").append(data.firstSeen)
+            .append(",\n      \"lastSeen\": ").append(data.lastSeen)
+            .append(",\n      \"totalSessions\": ").append(data.totalSessions)
+            .append(",\n      \"totalOnlineTime\": ").append(data.totalOnlineTime)
+            .append(",\n      \"appearances\": [");
+        long[] count = new long[1];
+        data.history.forEach((x, y, z, biomeId, timestamp, samples) -> {
+            text.append(count[0] == 0 ? "\n        " : ",\n        ")
+                .append("{\"timestamp\": ").append(timestamp)
+                .append(", \"x\": ").append(x)
+                .append(", \"y\": ").append(y)
+                .append(", \"z\": ").append(z)
+                .append(", \"biome\": ");
+            appendString(text, BiomeDictionary.nameOf(biomeId));
+            text.append(", \"samples\": ").append(samples).append('}');
+            count[0]++;
+        });
+        text.append(count[0] == 0 ? "]\n    }" : "\n      ]\n    }");
+        return count[0];
+    }
+
+    private static void appendString(StringBuilder text, String value) {
+        text.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                text.append('\\').append(c);
+            } else if (c < 0x20) {
+                text.append(String.format("\\u%04x", (int) c));
+            } else {
+                text.append(c);
+            }
+        }
+        text.append('"');
+    }
+
+    // Вложенный объект Gson начинается без отступа - сдвигаем последующие строки
+    private static String indent(String json) {
+        return json.replace("\n", "\n  ");
+    }
+
+    private static Chunk await(CompletableFuture<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Экспорт прерван", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Ошибка форматирования экспорта", e.getCause());
+        }
+    }
+
+    private static class Chunk {
+        final String text;
+        final int players;
+        final long rows;
+
+        Chunk(String text, int players, long rows) {
+            this.text = text;
+            this.players = players;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Запись в FileChannel через собственный буфер: канал вызывается только при его заполнении
+     */
+    private static class ChannelOutput implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+        private long written;
+
+        ChannelOutput(Path path) throws IOException {
+            this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void write(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    drain();
+                }
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+            written += bytes.length;
+        }
+
+        long getWritten() {
+            return written;
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    public static class Result {
+        public final Path path;
+        public final long players;
+        public final long rows;
+        public final long bytes;
+        public final long elapsedMillis;
+
+        Result(Path path, long players, long rows, long bytes, long elapsedMillis) {
+            this.path = path;
+            this.players = players;
+            this.rows = rows;
+            this.bytes = bytes;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public long getRowsPerSecond() {
+            return elapsedMillis == 0 ? rows * 1000 : rows * 1000 / elapsedMillis;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.evg.playertracker;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * StatsJournal - журнал появлений игроков только на дозапись.
+ * Каждая запись: [int длина][int CRC32][данные]. Журнал разбит на сегменты,
+ * запечатанные сегменты не изменяются и удаляются после сжатия в снимок.
+ * Сегмент самодостаточен: перед первым использованием id биома в нём пишется
+ * запись-определение (id, имя), по которой id переводятся при проигрывании
+ */
+public class StatsJournal {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    // Появление прежнего формата: каждое считалось отдельной сессией - так и проигрывается
+    private static final byte RECORD_APPEARANCE = 1;
+    private static final byte RECORD_BIOME = 2;
+    // Точка маршрута сессии: появление и байт флагов (начало сессии)
+    private static final byte RECORD_WAYPOINT = 3;
+    private static final byte FLAG_SESSION_START = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private FileChannel activeChannel;
+    private Path activeSegment;
+    private long nextSegmentId;
+    private long sizeBytes;
+    // id биомов, уже определённых в активном сегменте
+    private final BitSet definedBiomes = new BitSet();
+
+    public StatsJournal(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Дописывает записи в активный сегмент одной операцией записи
+     */
+    public synchronized void append(List<Record> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        FileChannel channel = openActive();
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(256, records.size() * 80));
+        CRC32 crc = new CRC32();
+        BitSet newBiomes = new BitSet();
+        for (Record record : records) {
+            int biomeId = record.appearance.biomeId;
+            if (!definedBiomes.get(biomeId) && !newBiomes.get(biomeId)) {
+                buffer = put(buffer, encodeBiome(biomeId), crc);
+                newBiomes.set(biomeId);
+            }
+            buffer = put(buffer, encode(record), crc);
+        }
+        buffer.flip();
+
+        int written = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        sizeBytes += written;
+        definedBiomes.or(newBiomes);
+    }
+
+    /**
+     * Запечатывает активный сегмент; следующие записи пойдут в новый сегмент.
+     * Возвращает все запечатанные на данный момент сегменты
+     */
+    public synchronized List<Path> roll() throws IOException {
+        closeActive();
+        return listSegments();
+    }
+
+    public synchronized void deleteSegments(List<Path> segments) throws IOException {
+        for (Path segment : segments) {
+            if (segment.equals(activeSegment)) {
+                continue;
+            }
+            long size = Files.exists(segment) ? Files.size(segment) : 0;
+            if (Files.deleteIfExists(segment)) {
+                sizeBytes = Math.max(0, sizeBytes - size);
+            }
+        }
+    }
+
+    /**
+     * Проигрывает все сегменты по порядку. Оборванная или повреждённая запись
+     * в конце сегмента (сбой во время записи) пропускается вместе с остатком сегмента
+     */
+    public synchronized void replay(Consumer<Record> consumer) throws IOException {
+        closeActive();
+        sizeBytes = 0;
+        // Набор сегментов мог смениться (восстановление бэкапа) - номер нового сегмента вычисляется заново
+        nextSegmentId = 0;
+
+        for (Path segment : listSegments()) {
+            sizeBytes += Files.size(segment);
+            ByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                buffer = ByteBuffer.allocate((int) channel.size());
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // читаем сегмент целиком
+                }
+            }
+            buffer.flip();
+
+            CRC32 crc = new CRC32();
+            // id биома в сегменте -> текущий id словаря
+            Map<Integer, Integer> biomeRemap = new HashMap<>();
+            while (buffer.remaining() >= HEADER_SIZE) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > MAX_RECORD_SIZE || length > buffer.remaining()) {
+                    PlayerTrackerMod.LOGGER.warn("Оборванная запись в журнале статистики: {}", segment);
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    PlayerTrackerMod.LOGGER.warn("Повреждённая запись в журнале статистики: {}", segment);
+                    break;
+                }
+                ByteBuffer data = ByteBuffer.wrap(payload);
+                try {
+                    byte type = data.get();
+                    if (type == RECORD_BIOME) {
+                        int segmentId = data.getInt();
+                        biomeRemap.put(segmentId, BiomeDictionary.idOf(readString(data)));
+                    } else if (type == RECORD_APPEARANCE || type == RECORD_WAYPOINT) {
+                        consumer.accept(decode(type, data, biomeRemap));
+                    }
+                } catch (BufferUnderflowException e) {
+                    PlayerTrackerMod.LOGGER.warn("Некорректная запись в журнале статистики: {}", segment);
+                    break;
+                }
+            }
+        }
+    }
+
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public synchronized void close() throws IOException {
+        closeActive();
+    }
+
+    private FileChannel openActive() throws IOException {
+        // Канал закрывается и при прерывании записывающего потока - тогда начинается
+        // новый сегмент: в хвосте прежнего может остаться недописанная запись
+        if (activeChannel != null && !activeChannel.isOpen()) {
+            activeChannel = null;
+            activeSegment = null;
+        }
+        if (activeChannel == null) {
+            Files.createDirectories(directory);
+            if (nextSegmentId == 0) {
+                nextSegmentId = findLastSegmentId() + 1;
+            }
+            activeSegment = directory.resolve(segmentName(nextSegmentId++));
+            activeChannel = FileChannel.open(activeSegment,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            definedBiomes.clear();
+        }
+        return activeChannel;
+    }
+
+    private void closeActive() throws IOException {
+        if (activeChannel != null) {
+            activeChannel.close();
+            activeChannel = null;
+            activeSegment = null;
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            // Имена сегментов содержат номер фиксированной ширины - сортировка по имени
+            return files
+                .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                    && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                .sorted()
+                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        }
+    }
+
+    private long findLastSegmentId() throws IOException {
+        long lastId = 0;
+        for (Path segment : listSegments()) {
+            String name = segment.getFileName().toString();
+            try {
+                long id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                lastId = Math.max(lastId, id);
+            } catch (NumberFormatException e) {
+                // посторонний файл - пропускаем
+            }
+        }
+        return lastId;
+    }
+
+    private static String segmentName(long id) {
+        return String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX);
+    }
+
+    private static ByteBuffer put(ByteBuffer buffer, byte[] payload, CRC32 crc) {
+        if (buffer.remaining() < HEADER_SIZE + payload.length) {
+            buffer = grow(buffer, HEADER_SIZE + payload.length);
+        }
+        crc.reset();
+        crc.update(payload);
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload);
+        return buffer;
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int required) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + required));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    private static byte[] encodeBiome(int biomeId) {
+        byte[] name = BiomeDictionary.nameOf(biomeId).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 2 + name.length);
+        buffer.put(RECORD_BIOME);
+        buffer.putInt(biomeId);
+        buffer.putShort((short) name.length);
+        buffer.put(name);
+        return buffer.array();
+    }
+
+    private static byte[] encode(Record record) {
+        PlayerStats.AppearanceData appearance = record.appearance;
+        byte[] username = record.username.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 8 * 3 + 2 + username.length + 4 * 4 + 8 * 2 + 1);
+        buffer.put(RECORD_WAYPOINT);
+        buffer.putLong(record.sequence);
+        buffer.putLong(record.uuid.getMostSignificantBits());
+        buffer.putLong(record.uuid.getLeastSignificantBits());
+        buffer.putShort((short) username.length);
+        buffer.put(username);
+        buffer.putInt(appearance.x);
+        buffer.putInt(appearance.y);
+        buffer.putInt(appearance.z);
+        buffer.putInt(appearance.biomeId);
+        buffer.putLong(appearance.timestamp);
+        buffer.putLong(appearance.sessionDuration);
+        buffer.put(appearance.sessionStart ? FLAG_SESSION_START : 0);
+        return buffer.array();
+    }
+
+    private static Record decode(byte type, ByteBuffer buffer, Map<Integer, Integer> biomeRemap) {
+        long sequence = buffer.getLong();
+        UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+        String username = readString(buffer);
+        int x = buffer.getInt();
+        int y = buffer.getInt();
+        int z = buffer.getInt();
+        int biomeId = biomeRemap.getOrDefault(buffer.getInt(), BiomeDictionary.UNKNOWN);
+        long timestamp = buffer.getLong();
+        long sessionDuration = buffer.getLong();
+        PlayerStats.AppearanceData appearance = new PlayerStats.AppearanceData(x, y, z, biomeId, timestamp, sessionDuration);
+        appearance.sessionStart = type == RECORD_APPEARANCE || (buffer.get() & FLAG_SESSION_START) != 0;
+        return new Record(sequence, uuid, username, appearance);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static class Record {
+        public final long sequence;
+        public final UUID uuid;
+        public final String username;
+        public final PlayerStats.AppearanceData appearance;
+
+        public Record(long sequence, UUID uuid, String username, PlayerStats.AppearanceData appearance) {
+            this.sequence = sequence;
+            this.uuid = uuid;
+            this.username = username;
+            this.appearance = appearance;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.evg.playertracker;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * StatsSnapshot - снимок статистики с индексом по UUID.
+ * Файл: [int magic][int версия][long смещение индекса][истории игроков...][индекс].
+ * Индекс содержит сводку каждого игрока и положение его истории, поэтому при запуске
+ * читается только он, а история загружается с диска при первом обращении.
+ * Истории, которые не загружались, при перезаписи снимка копируются байтами без разбора
+ */
+public class StatsSnapshot {
+    private static final int MAGIC = 0x50545331; // "PTS1"
+    // Версия 2: в индексе хранится уровень удержания истории
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+
+    private final Path path;
+    private final Path tempPath;
+    // Чтение истории против замены файла: файл и индекс к нему меняются одновременно
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Map<UUID, Location> locations = Map.of();
+    // Канал чтения историй из текущего файла: открывается при первом чтении
+    // и закрывается под блокировкой записи, когда файл заменяется
+    private FileChannel reader;
+    // Перевод id биомов файла в текущие; null - совпадают
+    private volatile int[] biomeRemap;
+
+    public StatsSnapshot(Path path) {
+        this.path = path;
+        this.tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    /**
+     * Читает индекс: сводки игроков передаются в consumer без истории
+     */
+    public Header load(BiConsumer<UUID, PlayerStats.PlayerStatsData> consumer) throws IOException {
+        Header header = new Header();
+        Map<UUID, Location> loaded = new HashMap<>();
+        int[] remap;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer head = read(channel, 0, HEADER_SIZE);
+            if (head.getInt() != MAGIC) {
+                throw new IOException("Неизвестный формат снимка статистики: " + path);
+            }
+            int version = head.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Неподдерживаемая версия снимка статистики: " + version);
+            }
+            channel.position(head.getLong());
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                PlayerStats.PlayerStatsData data = new PlayerStats.PlayerStatsData(in.readUTF(), in.readLong());
+                data.lastSeen = in.readLong();
+                data.totalSessions = in.readInt();
+                data.totalOnlineTime = in.readLong();
+                data.lastSequence = in.readLong();
+                data.retentionTier = version >= 2 ? in.readByte() : AppearanceHistory.TIER_FULL;
+                // История остаётся на диске до первого обращения
+                data.history = null;
+                loaded.put(uuid, new Location(in.readLong(), in.readInt(), data.lastSequence));
+                consumer.accept(uuid, data);
+            }
+
+            header.journalSequence = in.readLong();
+            header.serverName = in.readUTF();
+            header.lastUpdated = in.readLong();
+            header.totalUniquePlayers = in.readInt();
+            int biomeCount = in.readInt();
+            List<String> biomes = new ArrayList<>(biomeCount);
+            for (int i = 0; i < biomeCount; i++) {
+                biomes.add(in.readUTF());
+            }
+            remap = BiomeDictionary.remapTable(biomes);
+        }
+
+        locations = loaded;
+        biomeRemap = isIdentity(remap) ? null : remap;
+        return header;
+    }
+
+    /**
+     * Загружает историю игрока из текущего файла; null, если игрока в снимке нет
+     */
+    public AppearanceHistory readHistory(UUID uuid) throws IOException {
+        lock.readLock().lock();
+        try {
+            Location location = locations.get(uuid);
+            if (location == null) {
+                return null;
+            }
+            ByteBuffer buffer = read(reader(), location.offset, location.length);
+            AppearanceHistory history = AppearanceHistory.decode(buffer);
+            int[] remap = biomeRemap;
+            if (remap != null) {
+                history.remapBiomes(remap);
+            }
+            return history;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Вызывается под блокировкой чтения; канал, закрытый прерыванием читающего потока, открывается заново
+    private synchronized FileChannel reader() throws IOException {
+        if (reader == null || !reader.isOpen()) {
+            reader = FileChannel.open(path, StandardOpenOption.READ);
+        }
+        return reader;
+    }
+    
+    // Вызывается под блокировкой записи
+    private synchronized void closeReader() throws IOException {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+    }
+    
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            closeReader();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Размер истории игрока в снимке, 0 - если игрока в снимке нет
+    public int historyBytes(UUID uuid) {
+        Location location = locations.get(uuid);
+        return location != null ? location.length : 0;
+    }
+
+    // Совпадает ли история в снимке с состоянием игрока (по номеру последней записи журнала)
+    public boolean contains(UUID uuid, long sequence) {
+        Location location = locations.get(uuid);
+        return location != null && location.sequence == sequence;
+    }
+
+    /**
+     * Заменяет снимок файлом из бэкапа (null - снимка нет); индекс сбрасывается до load
+     */
+    public void install(Path source) throws IOException {
+        lock.writeLock().lock();
+        try {
+            closeReader();
+            Files.deleteIfExists(path);
+            if (source != null) {
+                StatsBackups.linkOrCopy(source, path);
+            }
+            locations = Map.of();
+            biomeRemap = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Writer beginWrite() throws IOException {
+        return new Writer();
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Снимок статистики обрезан");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static boolean isIdentity(int[] table) {
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static class Header {
+        public String serverName;
+        public long lastUpdated;
+        public int totalUniquePlayers;
+        // Последняя запись журнала, вошедшая в снимок целиком
+        public long journalSequence;
+    }
+
+    private static class Location {
+        final long offset;
+        final int length;
+        final long sequence;
+
+        Location(long offset, int length, long sequence) {
+            this.offset = offset;
+            this.length = length;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Запись нового снимка во временный файл; finish атомарно заменяет текущий снимок.
+     * Пишет один поток - поток сохранения статистики
+     */
+    public class Writer implements Closeable {
+        private final FileChannel channel;
+        // Текущий снимок - источник незагруженных историй, открывается при первой необходимости
+        private FileChannel source;
+        private final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        private final DataOutputStream index = new DataOutputStream(indexBytes);
+        private final Map<UUID, Location> written = new HashMap<>();
+        private long position = HEADER_SIZE;
+        private boolean finished;
+
+        private Writer() throws IOException {
+            this.channel = FileChannel.open(tempPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        /**
+         * history - закодированная история или null, если она не загружалась
+         * и берётся из текущего снимка
+         */
+        public void writePlayer(UUID uuid, PlayerStats.PlayerStatsData data, byte[] history) throws IOException {
+            ByteBuffer blob = history != null ? ByteBuffer.wrap(history) : currentBlob(uuid);
+            int length = blob.remaining();
+            while (blob.hasRemaining()) {
+                channel.write(blob, position + length - blob.remaining());
+            }
+
+            index.writeLong(uuid.getMostSignificantBits());
+            index.writeLong(uuid.getLeastSignificantBits());
+            index.writeUTF(data.username);
+            index.writeLong(data.firstSeen);
+            index.writeLong(data.lastSeen);
+            index.writeInt(data.totalSessions);
+            index.writeLong(data.totalOnlineTime);
+            index.writeLong(data.lastSequence);
+            index.writeByte(data.retentionTier);
+            index.writeLong(position);
+            index.writeInt(length);
+            written.put(uuid, new Location(position, length, data.lastSequence));
+            position += length;
+        }
+
+        public void finish(Header header, List<String> biomes) throws IOException {
+            ByteArrayOutputStream tail = new ByteArrayOutputStream(indexBytes.size() + 1024);
+            DataOutputStream out = new DataOutputStream(tail);
+            out.writeInt(written.size());
+            indexBytes.writeTo(out);
+            out.writeLong(header.journalSequence);
+            out.writeUTF(header.serverName);
+            out.writeLong(header.lastUpdated);
+            out.writeInt(header.totalUniquePlayers);
+            out.writeInt(biomes.size());
+            for (String biome : biomes) {
+                out.writeUTF(biome);
+            }
+            writeFully(ByteBuffer.wrap(tail.toByteArray()), position);
+
+            ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE);
+            head.putInt(MAGIC).putInt(VERSION).putLong(position);
+            head.flip();
+            writeFully(head, 0);
+            channel.force(false);
+            channel.close();
+            closeSource();
+
+            lock.writeLock().lock();
+            try {
+                closeReader();
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                locations = written;
+                // Новые истории пишутся в текущих id словаря
+                biomeRemap = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            finished = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                channel.close();
+                closeSource();
+                Files.deleteIfExists(tempPath);
+            }
+        }
+
+        private void closeSource() throws IOException {
+            if (source != null) {
+                source.close();
+                source = null;
+            }
+        }
+
+        private ByteBuffer currentBlob(UUID uuid) throws IOException {
+            Location location = locations.get(uuid);
+            if (location == null) {
+                return ByteBuffer.wrap(new AppearanceHistory().encode());
+            }
+            if (source == null) {
+                source = FileChannel.open(path, StandardOpenOption.READ);
+            }
+            ByteBuffer blob = read(source, location.offset, location.length);
+            // Файл записан со старым словарём - историю нужно перевести в текущие id
+            int[] remap = biomeRemap;
+            if (remap != null) {
+                AppearanceHistory history = AppearanceHistory.decode(blob);
+                history.remapBiomes(remap);
+                blob = ByteBuffer.wrap(history.encode());
+            }
+            return blob;
+        }
+
+        private void writeFully(ByteBuffer buffer, long at) throws IOException {
+            long start = at - buffer.position();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, start + buffer.position());
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.evg.playertracker;
+
+import net.neoforged.api.distmarker.Dist;
+import net.neoforged.api.distmarker.OnlyIn;
+import net.neoforged.neoforge.common.ModConfigSpec;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * TrackerScheduler - планировщик стадий трекера, управляемый клиентскими тиками.
+ * Все стадии выполняются на игровом потоке, у каждой свой интервал в тиках
+ */
+@OnlyIn(Dist.CLIENT)
+public class TrackerScheduler {
+
+    public enum Stage {
+        DETECT("detect", Config.UPDATE_INTERVAL),
+        CACHE("cache", Config.CACHE_UPDATE_INTERVAL),
+        STATS("stats", Config.STATS_UPDATE_INTERVAL),
+        HUD("hud", Config.HUD_UPDATE_INTERVAL);
+
+        private final String name;
+        private final ModConfigSpec.IntValue interval;
+
+        Stage(String name, ModConfigSpec.IntValue interval) {
+            this.name = name;
+            this.interval = interval;
+        }
+
+        public int getInterval() {
+            return Math.max(1, interval.get());
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final StageTiming[] timings = new StageTiming[STAGES.length];
+
+    static {
+        for (int i = 0; i < timings.length; i++) {
+            timings[i] = new StageTiming();
+        }
+    }
+
+    private static long currentTick = 0;
+    private static DetectionBatch latestBatch;
+    private static long cachedSequence = 0;
+    // Изменения, накопленные между запусками стадий (последнее изменение на игрока),
+    // чтобы при разных интервалах стадий ни одно событие не терялось
+    private static final Map<UUID, DetectionBatch.Entry> pendingCache = new LinkedHashMap<>();
+    private static final Map<UUID, DetectionBatch.Entry> pendingStats = new LinkedHashMap<>();
+
+    /**
+     * Вызывается из ClientTickEvent.Post - ровно один раз за игровой тик
+     */
+    public static void onClientTick() {
+        currentTick++;
+
+        if (!Config.MOD_ENABLED.get()) {
+            return;
+        }
+
+        for (Stage stage : STAGES) {
+            if (currentTick % stage.getInterval() == 0) {
+                runStage(stage);
+            }
+        }
+    }
+
+    /**
+     * Немедленный прогон обнаружения, кэша и статистики.
+     * Должен вызываться только с игрового потока
+     */
+    public static void runNow() {
+        runStage(Stage.DETECT);
+        runStage(Stage.CACHE);
+        runStage(Stage.STATS);
+    }
+
+    private static void runStage(Stage stage) {
+        long start = System.nanoTime();
+
+        switch (stage) {
+            case DETECT:
+                DetectionBatch batch = PlayerDetector.detectPlayers(currentTick);
+                if (batch != null) {
+                    latestBatch = batch;
+                    enqueueChanges(batch);
+                }
+                break;
+            case CACHE:
+                applyToCache();
+                break;
+            case STATS:
+                recordStats();
+                break;
+            case HUD:
+                PlayerTrackerHUD.renderHUD();
+                break;
+        }
+
+        timings[stage.ordinal()].record(System.nanoTime() - start);
+    }
+
+    private static void enqueueChanges(DetectionBatch batch) {
+        for (DetectionBatch.Entry entry : batch.getEntries()) {
+            DetectionBatch.Change change = entry.getChange();
+            if (change == DetectionBatch.Change.REMOVED) {
+                // REMOVED в кэш ничего не пишет: ожидающие ADDED/MOVED несут последнюю
+                // позицию игрока и не должны им затираться
+                pendingCache.putIfAbsent(entry.getUuid(), entry);
+            } else {
+                pendingCache.put(entry.getUuid(), entry);
+            }
+            // SEEN тоже продлевает сессию; REMOVED сессию не закрывает - игрок может
+            // вернуться в зону видимости, сессию закроет промежуток без наблюдений
+            if (change != DetectionBatch.Change.REMOVED) {
+                pendingStats.put(entry.getUuid(), entry);
+            }
+        }
+    }
+
+    private static void applyToCache() {
+        DetectionBatch batch = latestBatch;
+        if (batch == null || batch.getSequence() == cachedSequence) {
+            return;
+        }
+
+        PlayerCache cache = PlayerTrackerMod.getInstance().getPlayerCache();
+        if (cache == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (DetectionBatch.Entry entry : pendingCache.values()) {
+            switch (entry.getChange()) {
+                case SEEN:
+                    if (cache.touch(entry.getUuid(), now)) {
+                        break;
+                    }
+                    // Запись вытеснена - добавляем заново
+                case ADDED:
+                case MOVED:
+                    cache.addPlayer(entry.getUuid(), entry.getUsername(), entry.getPosition(), entry.getBiomeId());
+                    break;
+                case REMOVED:
+                    // Последняя известная позиция остаётся в кэше до истечения cacheLifetime
+                    break;
+            }
+        }
+        pendingCache.clear();
+        cachedSequence = batch.getSequence();
+        // Наблюдатель мог сместиться, поэтому снимок публикуется и без изменений игроков
+        PlayerDetector.publishSnapshot(cache, batch);
+    }
+
+    private static void recordStats() {
+        PlayerStats stats = PlayerTrackerMod.getInstance().getPlayerStats();
+        if (stats == null) {
+            return;
+        }
+
+        for (DetectionBatch.Entry entry : pendingStats.values()) {
+            stats.recordPlayerAppearance(entry.getUuid(), entry.getUsername(),
+                entry.getBlockPos(), entry.getBiomeId());
+        }
+        pendingStats.clear();
+        stats.closeIdleSessions();
+    }
+
+    public static long getCurrentTick() {
+        return currentTick;
+    }
+
+    public static DetectionBatch getLatestBatch() {
+        return latestBatch;
+    }
+
+    // Время выполнения стадий
+    public static Map<String, String> getStageTimings() {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (Stage stage : STAGES) {
+            StageTiming timing = timings[stage.ordinal()];
+            result.put(stage.toString(), String.format(
+                "интервал: %d т., запусков: %d, последний: %.1f мкс, средний: %.1f мкс, максимум: %.1f мкс",
+                stage.getInterval(), timing.runs, timing.lastNanos / 1000.0,
+                timing.getAverageNanos() / 1000.0, timing.maxNanos / 1000.0));
+        }
+        return result;
+    }
+
+    public static void resetTimings() {
+        for (StageTiming timing : timings) {
+            timing.reset();
+        }
+    }
+
+    private static class StageTiming {
+        private long runs;
+        private long lastNanos;
+        private long totalNanos;
+        private long maxNanos;
+
+        void record(long nanos) {
+            runs++;
+            lastNanos = nanos;
+            totalNanos += nanos;
+            if (nanos > maxNanos) {
+                maxNanos = nanos;
+            }
+        }
+
+        double getAverageNanos() {
+            return runs == 0 ? 0 : (double) totalNanos / runs;
+        }
+
+        void reset() {
+            runs = 0;
+            lastNanos = 0;
+            totalNanos = 0;
+            maxNanos = 0;
+        }
+    }
+}
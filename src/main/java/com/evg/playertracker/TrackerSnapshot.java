@@ -0,0 +1,68 @@
+package com.evg.playertracker;
+
+import net.minecraft.world.phys.Vec3;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * TrackerSnapshot - неизменяемый, уже отсортированный результат одного цикла обнаружения.
+ * Публикуется детектором через volatile-ссылку; HUD и команды читают его без блокировок,
+ * дистанции и направления вычислены заранее при публикации
+ */
+public final class TrackerSnapshot {
+    public static final TrackerSnapshot EMPTY = new TrackerSnapshot(0, 0, Config.SortMode.DISTANCE,
+        Vec3.ZERO, new PlayerData[0], new double[0], new String[0]);
+
+    private final long sequence;
+    private final long timestamp;
+    private final Config.SortMode sortMode;
+    private final Vec3 viewerPos;
+    private final PlayerData[] players;
+    private final double[] distances;
+    private final String[] directions;
+    private final List<PlayerData> playerList;
+
+    private TrackerSnapshot(long sequence, long timestamp, Config.SortMode sortMode, Vec3 viewerPos,
+                            PlayerData[] players, double[] distances, String[] directions) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.sortMode = sortMode;
+        this.viewerPos = viewerPos;
+        this.players = players;
+        this.distances = distances;
+        this.directions = directions;
+        this.playerList = Collections.unmodifiableList(Arrays.asList(players));
+    }
+
+    /**
+     * Фиксирует результат запроса к кэшу: копирует строки и заранее считает дистанции и направления
+     */
+    public static TrackerSnapshot of(long sequence, Config.SortMode sortMode, VisiblePlayers visible) {
+        int size = visible.size();
+        PlayerData[] players = new PlayerData[size];
+        double[] distances = new double[size];
+        String[] directions = new String[size];
+
+        for (int i = 0; i < size; i++) {
+            players[i] = visible.get(i);
+            distances[i] = visible.getDistance(i);
+            directions[i] = visible.getDirection(i);
+        }
+
+        return new TrackerSnapshot(sequence, System.currentTimeMillis(), sortMode,
+            visible.getViewerPos(), players, distances, directions);
+    }
+
+    public long getSequence() { return sequence; }
+    public long getTimestamp() { return timestamp; }
+    public Config.SortMode getSortMode() { return sortMode; }
+    public Vec3 getViewerPos() { return viewerPos; }
+    public int size() { return players.length; }
+    public boolean isEmpty() { return players.length == 0; }
+    public PlayerData get(int index) { return players[index]; }
+    public double getDistance(int index) { return distances[index]; }
+    public String getDirection(int index) { return directions[index]; }
+    public List<PlayerData> getPlayers() { return playerList; }
+}
@@ -0,0 +1,282 @@
+package com.evg.playertracker;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * UuidLongMap - хэш-таблица UUID -> long с открытой адресацией (линейное пробирование).
+ * Ключ хранится двумя long, значение - примитивом: ни упаковки Long, ни узлов на запись,
+ * около 24 байт на слот. Удаление сдвигает хвост кластера назад, надгробий нет.
+ * Не потокобезопасна - доступ под внешней блокировкой
+ */
+public class UuidLongMap {
+    // Значение-маркер пустого слота; хранить его в карте нельзя
+    public static final long NO_VALUE = Long.MIN_VALUE;
+    private static final int MIN_CAPACITY = 16;
+
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(long mostSigBits, long leastSigBits, long value);
+    }
+
+    @FunctionalInterface
+    public interface RemovalListener {
+        void removed(long mostSigBits, long leastSigBits, long value);
+    }
+
+    private long[] msbs;
+    private long[] lsbs;
+    private long[] values;
+    private int mask;
+    private int size;
+    // Буфер для выбора порога вытеснения, переиспользуется между пакетами
+    private long[] scratch = new long[0];
+
+    public UuidLongMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long get(UUID uuid) {
+        int slot = find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        return slot < 0 ? NO_VALUE : values[slot];
+    }
+
+    // Возвращает предыдущее значение или NO_VALUE
+    public long put(UUID uuid, long value) {
+        if (value == NO_VALUE) {
+            throw new IllegalArgumentException("NO_VALUE cannot be stored");
+        }
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        int slot = slotOf(msb, lsb);
+        while (values[slot] != NO_VALUE) {
+            if (msbs[slot] == msb && lsbs[slot] == lsb) {
+                long previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        msbs[slot] = msb;
+        lsbs[slot] = lsb;
+        values[slot] = value;
+        if (++size > (mask + 1) * 3 / 4) {
+            rehash((mask + 1) * 2);
+        }
+        return NO_VALUE;
+    }
+
+    public long remove(UUID uuid) {
+        int slot = find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (slot < 0) {
+            return NO_VALUE;
+        }
+        long previous = values[slot];
+        deleteSlot(slot);
+        return previous;
+    }
+
+    public void clear() {
+        Arrays.fill(values, NO_VALUE);
+        size = 0;
+    }
+
+    public void forEach(EntryVisitor visitor) {
+        for (int slot = 0; slot <= mask; slot++) {
+            if (values[slot] != NO_VALUE) {
+                visitor.visit(msbs[slot], lsbs[slot], values[slot]);
+            }
+        }
+    }
+
+    public long minValue() {
+        long min = NO_VALUE;
+        for (int slot = 0; slot <= mask; slot++) {
+            long value = values[slot];
+            if (value != NO_VALUE && (min == NO_VALUE || value < min)) {
+                min = value;
+            }
+        }
+        return min;
+    }
+
+    /**
+     * Пакетное удаление: один проход по таблице, удаляются записи со значением <= cutoff
+     */
+    public int removeAtMost(long cutoff, RemovalListener listener) {
+        int removed = 0;
+        int slot = 0;
+        while (slot <= mask) {
+            long value = values[slot];
+            if (value != NO_VALUE && value <= cutoff) {
+                long msb = msbs[slot];
+                long lsb = lsbs[slot];
+                // Сдвиг может поставить в этот слот ещё не проверенную запись - слот проверяется повторно
+                deleteSlot(slot);
+                listener.removed(msb, lsb, value);
+                removed++;
+            } else {
+                slot++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Удаляет count записей с наименьшими значениями за O(n): порог находится
+     * быстрым выбором, затем одним проходом удаляются записи ниже и на пороге
+     */
+    public int removeSmallest(int count, RemovalListener listener) {
+        if (count <= 0) {
+            return 0;
+        }
+        if (count >= size) {
+            int removed = size;
+            forEach(listener::removed);
+            clear();
+            return removed;
+        }
+
+        if (scratch.length < size) {
+            scratch = new long[mask + 1];
+        }
+        int n = 0;
+        for (int slot = 0; slot <= mask; slot++) {
+            if (values[slot] != NO_VALUE) {
+                scratch[n++] = values[slot];
+            }
+        }
+        long threshold = select(scratch, n, count - 1);
+
+        // Сначала всё строго ниже порога, затем записи на пороге до нужного числа
+        int below = 0;
+        for (int i = 0; i < n; i++) {
+            if (scratch[i] < threshold) {
+                below++;
+            }
+        }
+        int atThreshold = count - below;
+        int removed = 0;
+        int slot = 0;
+        while (slot <= mask && removed < count) {
+            long value = values[slot];
+            if (value != NO_VALUE && (value < threshold || (value == threshold && atThreshold > 0))) {
+                if (value == threshold) {
+                    atThreshold--;
+                }
+                long msb = msbs[slot];
+                long lsb = lsbs[slot];
+                deleteSlot(slot);
+                listener.removed(msb, lsb, value);
+                removed++;
+            } else {
+                slot++;
+            }
+        }
+        return removed;
+    }
+
+    public long estimateBytes() {
+        return 64 + (long) (mask + 1) * 24 + scratch.length * 8L;
+    }
+
+    private int find(long msb, long lsb) {
+        int slot = slotOf(msb, lsb);
+        while (values[slot] != NO_VALUE) {
+            if (msbs[slot] == msb && lsbs[slot] == lsb) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Удаление с обратным сдвигом: записи кластера, которые могут занять дыру, переезжают в неё
+    private void deleteSlot(int slot) {
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (values[next] != NO_VALUE) {
+            int home = slotOf(msbs[next], lsbs[next]);
+            // Запись можно сдвинуть, если её домашний слот не лежит в (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                msbs[hole] = msbs[next];
+                lsbs[hole] = lsbs[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[hole] = NO_VALUE;
+        size--;
+    }
+
+    private int slotOf(long msb, long lsb) {
+        long hash = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        msbs = new long[capacity];
+        lsbs = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(values, NO_VALUE);
+        mask = capacity - 1;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldMsbs = msbs;
+        long[] oldLsbs = lsbs;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == NO_VALUE) {
+                continue;
+            }
+            int slot = slotOf(oldMsbs[i], oldLsbs[i]);
+            while (values[slot] != NO_VALUE) {
+                slot = (slot + 1) & mask;
+            }
+            msbs[slot] = oldMsbs[i];
+            lsbs[slot] = oldLsbs[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    // k-я порядковая статистика (с нуля) среди первых n элементов; массив переставляется
+    private static long select(long[] data, int n, int k) {
+        int left = 0;
+        int right = n - 1;
+        while (left < right) {
+            long pivot = data[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (data[i] < pivot) i++;
+                while (data[j] > pivot) j--;
+                if (i <= j) {
+                    long tmp = data[i];
+                    data[i] = data[j];
+                    data[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return data[k];
+            }
+        }
+        return data[k];
+    }
+}
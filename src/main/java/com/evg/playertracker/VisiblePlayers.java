@@ -0,0 +1,70 @@
+package com.evg.playertracker;
+
+import net.minecraft.world.phys.Vec3;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * VisiblePlayers - результат запроса к кэшу относительно позиции наблюдателя.
+ * Квадраты дистанций хранятся в примитивном массиве, корень и направление
+ * вычисляются только для тех строк, которые реально отображаются
+ */
+public class VisiblePlayers {
+    public static final VisiblePlayers EMPTY = new VisiblePlayers(Vec3.ZERO, new PlayerData[0], new double[0], 0);
+
+    private final Vec3 viewerPos;
+    private final PlayerData[] players;
+    private final double[] distancesSq;
+    private final int size;
+
+    VisiblePlayers(Vec3 viewerPos, PlayerData[] players, double[] distancesSq, int size) {
+        this.viewerPos = viewerPos;
+        this.players = players;
+        this.distancesSq = distancesSq;
+        this.size = size;
+    }
+
+    public Vec3 getViewerPos() { return viewerPos; }
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public PlayerData get(int index) { return players[checkIndex(index)]; }
+    public double getDistanceSq(int index) { return distancesSq[checkIndex(index)]; }
+
+    public double getDistance(int index) {
+        return Math.sqrt(getDistanceSq(index));
+    }
+
+    public String getDirection(int index) {
+        return players[checkIndex(index)].directionFrom(viewerPos);
+    }
+
+    // Первые limit строк без копирования массивов
+    public VisiblePlayers limit(int limit) {
+        if (limit >= size) {
+            return this;
+        }
+        return new VisiblePlayers(viewerPos, players, distancesSq, Math.max(0, limit));
+    }
+
+    public List<PlayerData> asList() {
+        return new AbstractList<>() {
+            @Override
+            public PlayerData get(int index) {
+                return VisiblePlayers.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return index;
+    }
+}